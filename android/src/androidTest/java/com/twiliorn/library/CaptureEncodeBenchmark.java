@@ -0,0 +1,280 @@
+package com.twiliorn.library;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.ImageFormat;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.YuvImage;
+import android.opengl.GLES20;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import tvi.webrtc.EglBase;
+import tvi.webrtc.GlUtil;
+import tvi.webrtc.JavaI420Buffer;
+import tvi.webrtc.TextureBufferImpl;
+import tvi.webrtc.VideoFrame;
+import tvi.webrtc.YuvConverter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the two encode paths of {@link Utils} on the device's GPU: the texture readback path and the
+ * {@code toI420()} path, for the same texture frame at the sizes and formats captures typically use. Rotated I420
+ * frames are also encoded both by rotating in YUV space, as {@link Utils} does, and by the Bitmap rotation it
+ * replaced: encode, decode, rotate the Bitmap and encode again.
+ * <p>
+ * Median and 90th percentile encode times are logged under the library tag and reported as instrumentation status,
+ * e.g. {@code ./gradlew connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.class=com.twiliorn.library.CaptureEncodeBenchmark}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CaptureEncodeBenchmark {
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 30;
+    private static final int[][] SIZES = {{640, 480}, {1280, 720}, {1920, 1080}};
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+
+    private HandlerThread glThread;
+    private Handler glHandler;
+    private EglBase eglBase;
+    private YuvConverter yuvConverter;
+
+    @Before
+    public void setUp() throws Exception {
+        glThread = new HandlerThread("CaptureEncodeBenchmark");
+        glThread.start();
+        glHandler = new Handler(glThread.getLooper());
+        runOnGlThread(() -> {
+            eglBase = EglBase.create();
+            eglBase.createDummyPbufferSurface();
+            eglBase.makeCurrent();
+            yuvConverter = new YuvConverter();
+            return null;
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        // posts its cleanup to the GL thread, ahead of the context release below
+        TextureFrameEncoder.release();
+        runOnGlThread(() -> {
+            yuvConverter.release();
+            eglBase.release();
+            return null;
+        });
+        glThread.quitSafely();
+        Utils.releaseCaptureBuffers();
+    }
+
+    @Test
+    public void compareEncodePaths() throws Exception {
+        FrameCaptureOptions[] optionsList = {
+                FrameCaptureOptions.DEFAULT,
+                new FrameCaptureOptions(FrameCaptureOptions.Format.PNG, FrameCaptureOptions.DEFAULT_QUALITY, 0),
+        };
+        Bundle results = new Bundle();
+        for (int[] size : SIZES) {
+            VideoFrame frame = createTextureFrame(size[0], size[1]);
+            try {
+                for (FrameCaptureOptions options : optionsList) {
+                    String name = size[0] + "x" + size[1] + "_" + options.format;
+                    double[] texture = measure(frame, options, true, "texture");
+                    double[] i420 = measure(frame, options, false, "i420");
+                    String summary = String.format(Locale.US,
+                            "%s texture median %.2f ms p90 %.2f ms, i420 median %.2f ms p90 %.2f ms",
+                            name, texture[0], texture[1], i420[0], i420[1]);
+                    Log.i(TwilioPackage.TAG, "CaptureEncodeBenchmark: " + summary);
+                    results.putString(name, summary);
+                }
+            } finally {
+                frame.release();
+            }
+        }
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+    }
+
+    @Test
+    public void compareRotationPaths() {
+        Bundle results = new Bundle();
+        BitmapRotationEncoder bitmapRotation = new BitmapRotationEncoder();
+        try {
+            for (int[] size : SIZES) {
+                JavaI420Buffer buffer = createI420Buffer(size[0], size[1]);
+                try {
+                    for (int rotation : ROTATIONS) {
+                        VideoFrame frame = new VideoFrame(buffer, rotation, 0);
+                        String name = size[0] + "x" + size[1] + "_rotation" + rotation;
+                        double[] yuv = measure(frame, FrameCaptureOptions.DEFAULT, false, "i420");
+                        double[] bitmap = measure(out -> bitmapRotation.encode(buffer, rotation, out));
+                        String summary = String.format(Locale.US,
+                                "%s yuv rotation median %.2f ms p90 %.2f ms, bitmap rotation median %.2f ms p90 %.2f ms",
+                                name, yuv[0], yuv[1], bitmap[0], bitmap[1]);
+                        Log.i(TwilioPackage.TAG, "CaptureEncodeBenchmark: " + summary);
+                        results.putString(name, summary);
+                    }
+                } finally {
+                    buffer.release();
+                }
+            }
+        } finally {
+            bitmapRotation.release();
+        }
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+    }
+
+    // median and 90th percentile in ms
+    private double[] measure(VideoFrame frame, FrameCaptureOptions options, boolean allowTexture, String expectedPath) {
+        return measure(out -> {
+            // encodeVideoFrame releases the frame it is given
+            frame.retain();
+            assertEquals(expectedPath, Utils.encodeVideoFrame(frame, options, out, allowTexture));
+        });
+    }
+
+    private double[] measure(Encoder encoder) {
+        CaptureBufferPool.JpegOutputStream out = new CaptureBufferPool.JpegOutputStream(256 * 1024);
+        double[] timesMs = new double[ITERATIONS];
+        for (int i = 0; i < WARMUP_ITERATIONS + ITERATIONS; i++) {
+            out.reset();
+            long start = System.nanoTime();
+            encoder.encode(out);
+            long elapsedNs = System.nanoTime() - start;
+            assertTrue(out.size() > 0);
+            if (i >= WARMUP_ITERATIONS) {
+                timesMs[i - WARMUP_ITERATIONS] = elapsedNs / 1e6;
+            }
+        }
+        Arrays.sort(timesMs);
+        return new double[] {timesMs[ITERATIONS / 2], timesMs[ITERATIONS * 9 / 10]};
+    }
+
+    private interface Encoder {
+        void encode(CaptureBufferPool.JpegOutputStream out);
+    }
+
+    /**
+     * The rotation path used before frames were rotated in YUV space: the unrotated image is encoded at quality 90,
+     * decoded into a Bitmap, drawn rotated into a second one and encoded again at quality 100. Bitmaps are reused
+     * between calls, as they were pooled then.
+     */
+    private static final class BitmapRotationEncoder {
+        private final I420ToNV21Converter converter = new I420ToNV21Converter();
+        private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        private final CaptureBufferPool.JpegOutputStream unrotated = new CaptureBufferPool.JpegOutputStream(256 * 1024);
+        private byte[] nv21 = new byte[0];
+        private Bitmap decoded;
+        private Bitmap rotated;
+
+        void encode(VideoFrame.I420Buffer buffer, int rotation, CaptureBufferPool.JpegOutputStream out) {
+            int width = buffer.getWidth();
+            int height = buffer.getHeight();
+            int nv21Size = I420ToNV21Converter.nv21Size(width, height);
+            if (nv21.length < nv21Size) {
+                nv21 = new byte[nv21Size];
+            }
+            converter.convert(buffer, nv21, 0);
+            YuvImage yuvImage = new YuvImage(nv21, ImageFormat.NV21, width, height, null);
+            if (rotation == 0) {
+                yuvImage.compressToJpeg(new Rect(0, 0, width, height), FrameCaptureOptions.DEFAULT_QUALITY, out);
+                return;
+            }
+            unrotated.reset();
+            yuvImage.compressToJpeg(new Rect(0, 0, width, height), FrameCaptureOptions.DEFAULT_QUALITY, unrotated);
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inMutable = true;
+            options.inBitmap = reuse(decoded, width, height);
+            decoded = BitmapFactory.decodeByteArray(unrotated.getBuffer(), 0, unrotated.size(), options);
+
+            Matrix matrix = new Matrix();
+            matrix.postRotate(rotation);
+            RectF bounds = new RectF(0, 0, width, height);
+            matrix.mapRect(bounds);
+            matrix.postTranslate(-bounds.left, -bounds.top);
+            rotated = reuse(rotated, Math.round(bounds.width()), Math.round(bounds.height()));
+            new Canvas(rotated).drawBitmap(decoded, matrix, paint);
+            rotated.compress(Bitmap.CompressFormat.JPEG, 100, out);
+        }
+
+        void release() {
+            if (decoded != null) {
+                decoded.recycle();
+            }
+            if (rotated != null) {
+                rotated.recycle();
+            }
+        }
+
+        private static Bitmap reuse(Bitmap bitmap, int width, int height) {
+            if (bitmap != null && bitmap.getWidth() == width && bitmap.getHeight() == height) {
+                return bitmap;
+            }
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+            return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+    }
+
+    // an I420 buffer filled with noise
+    private static JavaI420Buffer createI420Buffer(int width, int height) {
+        JavaI420Buffer buffer = JavaI420Buffer.allocate(width, height);
+        Random random = new Random(width);
+        fill(buffer.getDataY(), random);
+        fill(buffer.getDataU(), random);
+        fill(buffer.getDataV(), random);
+        return buffer;
+    }
+
+    private static void fill(ByteBuffer plane, Random random) {
+        byte[] bytes = new byte[plane.remaining()];
+        random.nextBytes(bytes);
+        plane.put(bytes);
+    }
+
+    // an RGB texture filled with noise, so the encoders can't shortcut flat areas
+    private VideoFrame createTextureFrame(int width, int height) throws Exception {
+        int textureId = runOnGlThread(() -> {
+            byte[] pixels = new byte[width * height * 4];
+            new Random(width).nextBytes(pixels);
+            int id = GlUtil.generateTexture(GLES20.GL_TEXTURE_2D);
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, id);
+            GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0, GLES20.GL_RGBA,
+                    GLES20.GL_UNSIGNED_BYTE, ByteBuffer.wrap(pixels));
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+            return id;
+        });
+        TextureBufferImpl buffer = new TextureBufferImpl(width, height, VideoFrame.TextureBuffer.Type.RGB, textureId,
+                new Matrix(), glHandler, yuvConverter,
+                () -> glHandler.post(() -> GLES20.glDeleteTextures(1, new int[] {textureId}, 0)));
+        return new VideoFrame(buffer, 0, 0);
+    }
+
+    private <T> T runOnGlThread(Callable<T> task) throws Exception {
+        FutureTask<T> future = new FutureTask<>(task);
+        glHandler.post(future);
+        return future.get();
+    }
+}
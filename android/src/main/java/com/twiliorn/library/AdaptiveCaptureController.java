@@ -0,0 +1,296 @@
+package com.twiliorn.library;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.twilio.video.LocalVideoTrackStats;
+import com.twilio.video.StatsListener;
+import com.twilio.video.StatsReport;
+import com.twilio.video.VideoDimensions;
+import com.twilio.video.VideoFormat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Steps the local capture format down while the device is hot or the local video track can't keep up with its
+ * frame rate, and back up once both have recovered, so long calls don't end in thermal throttling and uncontrolled
+ * encoder frame drops.
+ * <p>
+ * The ladder below the requested format is 1080p, 720p, 720p at 24 fps, 540p at 24 fps and 540p at 15 fps, skipping
+ * steps that aren't below the request. Stepping down waits {@code stepDownDelayMs} after the last change so the new
+ * format can settle, stepping up needs {@code stepUpDelayMs} of a cool device and a healthy frame rate.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+final class AdaptiveCaptureController {
+    interface StatsSource {
+        /**
+         * Request stats for the connected room, returns false if there is none.
+         */
+        boolean getStats(StatsListener listener);
+    }
+
+    interface Listener {
+        /**
+         * {@link #limit} changed, the capture format has to be selected again.
+         */
+        void onCaptureLimitChanged();
+    }
+
+    static final class Config {
+        static final Config DISABLED = new Config(false, 5000, 10000, 60000, 0.7f, 3);
+
+        final boolean enabled;
+        final long statsIntervalMs;
+        final long stepDownDelayMs;
+        final long stepUpDelayMs;
+        // the sent frame rate counts as too low below this fraction of the capture frame rate
+        final float minFrameRateRatio;
+        // consecutive low frame rate samples before stepping down
+        final int lowFrameRateSamples;
+
+        Config(
+                boolean enabled,
+                long statsIntervalMs,
+                long stepDownDelayMs,
+                long stepUpDelayMs,
+                float minFrameRateRatio,
+                int lowFrameRateSamples
+        ) {
+            this.enabled = enabled;
+            this.statsIntervalMs = Math.max(1000, statsIntervalMs);
+            this.stepDownDelayMs = Math.max(0, stepDownDelayMs);
+            this.stepUpDelayMs = Math.max(this.stepDownDelayMs, stepUpDelayMs);
+            this.minFrameRateRatio = minFrameRateRatio;
+            this.lowFrameRateSamples = Math.max(1, lowFrameRateSamples);
+        }
+
+        /**
+         * Parse {@code {enabled, statsIntervalMs, stepDownDelayMs, stepUpDelayMs, minFrameRateRatio,
+         * lowFrameRateSamples}} from JS.
+         */
+        static Config fromMap(@Nullable ReadableMap map) {
+            if (map == null) {
+                return DISABLED;
+            }
+            return new Config(
+                    !map.hasKey("enabled") || map.getBoolean("enabled"),
+                    map.hasKey("statsIntervalMs") ? map.getInt("statsIntervalMs") : DISABLED.statsIntervalMs,
+                    map.hasKey("stepDownDelayMs") ? map.getInt("stepDownDelayMs") : DISABLED.stepDownDelayMs,
+                    map.hasKey("stepUpDelayMs") ? map.getInt("stepUpDelayMs") : DISABLED.stepUpDelayMs,
+                    map.hasKey("minFrameRateRatio")
+                            ? (float) map.getDouble("minFrameRateRatio") : DISABLED.minFrameRateRatio,
+                    map.hasKey("lowFrameRateSamples")
+                            ? map.getInt("lowFrameRateSamples") : DISABLED.lowFrameRateSamples
+            );
+        }
+    }
+
+    // {max short side, max fps}
+    private static final int[][] STEPS = {{1080, 30}, {720, 30}, {720, 24}, {540, 24}, {540, 15}};
+    // a frame rate this close to the capture rate counts as healthy for stepping up
+    private static final float HEALTHY_FRAME_RATE_RATIO = 0.9f;
+
+    private final StatsSource statsSource;
+    private final Listener listener;
+    @Nullable private final PowerManager powerManager;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable pollRunnable = this::poll;
+    @Nullable private final PowerManager.OnThermalStatusChangedListener thermalListener;
+    private final StatsListener statsListener = this::onStats;
+
+    private Config config = Config.DISABLED;
+    private boolean running;
+    private int level;
+    private int maxLevel;
+    private int thermalStatus;
+    private int lowSamples;
+    private long lastChangeMs;
+    private long healthySinceMs;
+    @Nullable private VideoFormat captureFormat;
+
+    AdaptiveCaptureController(Context context, StatsSource statsSource, Listener listener) {
+        this.statsSource = statsSource;
+        this.listener = listener;
+        this.powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        this.thermalListener = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q ? this::onThermalStatusChanged : null;
+    }
+
+    void start(Config config) {
+        stop();
+        this.config = config;
+        if (!config.enabled) {
+            return;
+        }
+        running = true;
+        lastChangeMs = SystemClock.elapsedRealtime();
+        healthySinceMs = lastChangeMs;
+        if (thermalListener != null && powerManager != null) {
+            thermalStatus = powerManager.getCurrentThermalStatus();
+            powerManager.addThermalStatusListener(thermalListener);
+        }
+        handler.postDelayed(pollRunnable, config.statsIntervalMs);
+    }
+
+    /**
+     * Stop watching and go back to the requested format the next time it is selected.
+     */
+    void stop() {
+        handler.removeCallbacks(pollRunnable);
+        if (running && thermalListener != null && powerManager != null) {
+            powerManager.removeThermalStatusListener(thermalListener);
+        }
+        running = false;
+        level = 0;
+        lowSamples = 0;
+        thermalStatus = PowerManager.THERMAL_STATUS_NONE;
+    }
+
+    int getLevel() {
+        return level;
+    }
+
+    /**
+     * The format to capture instead of {@code requested} at the current level.
+     */
+    VideoFormat limit(VideoFormat requested) {
+        List<VideoFormat> ladder = ladder(requested);
+        maxLevel = ladder.size() - 1;
+        level = Math.min(level, maxLevel);
+        return ladder.get(level);
+    }
+
+    /**
+     * The local video track was (re)built with {@code format}, frame rates are compared against it from now on.
+     */
+    void onCaptureFormat(VideoFormat format) {
+        captureFormat = format;
+        lowSamples = 0;
+    }
+
+    private void onThermalStatusChanged(int status) {
+        Log.d(TwilioPackage.TAG, "AdaptiveCapture: thermal status " + status);
+        thermalStatus = status;
+        if (isHot()) {
+            maybeStepDown("thermal status " + status);
+        }
+    }
+
+    private void poll() {
+        if (!running) {
+            return;
+        }
+        if (!statsSource.getStats(statsListener)) {
+            handler.postDelayed(pollRunnable, config.statsIntervalMs);
+        }
+    }
+
+    private void onStats(List<StatsReport> reports) {
+        if (!running) {
+            return;
+        }
+        handler.postDelayed(pollRunnable, config.statsIntervalMs);
+
+        int frameRate = -1;
+        for (StatsReport report : reports) {
+            for (LocalVideoTrackStats stats : report.getLocalVideoTrackStats()) {
+                frameRate = Math.max(frameRate, stats.frameRate);
+            }
+        }
+        if (frameRate < 0 || captureFormat == null) {
+            // not publishing video, only the thermal status counts
+            lowSamples = 0;
+            evaluate(false, true);
+            return;
+        }
+
+        boolean low = frameRate < captureFormat.framerate * config.minFrameRateRatio;
+        lowSamples = low ? lowSamples + 1 : 0;
+        evaluate(lowSamples >= config.lowFrameRateSamples,
+                frameRate >= captureFormat.framerate * HEALTHY_FRAME_RATE_RATIO);
+        if (lowSamples >= config.lowFrameRateSamples) {
+            Log.d(TwilioPackage.TAG, "AdaptiveCapture: sending " + frameRate + " of " + captureFormat.framerate + " fps");
+        }
+    }
+
+    private void evaluate(boolean frameRateTooLow, boolean frameRateHealthy) {
+        long now = SystemClock.elapsedRealtime();
+        if (isHot() || frameRateTooLow) {
+            healthySinceMs = now;
+            maybeStepDown(isHot() ? "thermal status " + thermalStatus : "low frame rate");
+            return;
+        }
+        if (!frameRateHealthy || thermalStatus > PowerManager.THERMAL_STATUS_LIGHT) {
+            healthySinceMs = now;
+            return;
+        }
+        if (level > 0
+                && now - healthySinceMs >= config.stepUpDelayMs
+                && now - lastChangeMs >= config.stepUpDelayMs) {
+            setLevel(level - 1, "recovered");
+        }
+    }
+
+    private boolean isHot() {
+        return thermalStatus >= PowerManager.THERMAL_STATUS_MODERATE;
+    }
+
+    private void maybeStepDown(String reason) {
+        if (!running || level >= maxLevel) {
+            return;
+        }
+        if (SystemClock.elapsedRealtime() - lastChangeMs < config.stepDownDelayMs) {
+            return;
+        }
+        setLevel(level + 1, reason);
+    }
+
+    private void setLevel(int newLevel, String reason) {
+        Log.i(TwilioPackage.TAG, "AdaptiveCapture: level " + level + " -> " + newLevel + " (" + reason + ")");
+        level = newLevel;
+        lowSamples = 0;
+        lastChangeMs = SystemClock.elapsedRealtime();
+        healthySinceMs = lastChangeMs;
+        listener.onCaptureLimitChanged();
+    }
+
+    private static List<VideoFormat> ladder(VideoFormat requested) {
+        List<VideoFormat> ladder = new ArrayList<>();
+        ladder.add(requested);
+        VideoFormat previous = requested;
+        for (int[] step : STEPS) {
+            VideoFormat format = cap(requested, step[0], step[1]);
+            if (isSmaller(format, previous)) {
+                ladder.add(format);
+                previous = format;
+            }
+        }
+        return ladder;
+    }
+
+    private static VideoFormat cap(VideoFormat format, int maxShortSide, int maxFps) {
+        int width = format.dimensions.width;
+        int height = format.dimensions.height;
+        int shortSide = Math.min(width, height);
+        if (shortSide > maxShortSide) {
+            float scale = (float) maxShortSide / shortSide;
+            width = Math.round(width * scale) & ~1;
+            height = Math.round(height * scale) & ~1;
+        }
+        return new VideoFormat(new VideoDimensions(width, height), Math.min(format.framerate, maxFps));
+    }
+
+    private static boolean isSmaller(VideoFormat format, VideoFormat than) {
+        return format.dimensions.width * format.dimensions.height < than.dimensions.width * than.dimensions.height
+                || format.framerate < than.framerate;
+    }
+}
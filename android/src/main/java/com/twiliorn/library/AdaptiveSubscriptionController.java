@@ -0,0 +1,252 @@
+package com.twiliorn.library;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.twilio.video.RemoteVideoTrack;
+import com.twilio.video.TrackPriority;
+import com.twilio.video.VideoContentPreferences;
+import com.twilio.video.VideoDimensions;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Feeds the laid out size and visibility of remote video tiles back to the SDK, so each remote video track is
+ * subscribed at the size it is actually drawn at.
+ * <p>
+ * Tiles are aggregated per trackSid: the largest visible tile sets the track's render dimensions (which requires
+ * the room to be connected with manual video content preferences) and its subscriber priority. Changes are debounced
+ * and only sent when the result differs from what was last applied, so layout passes and scrolling don't turn into
+ * signaling. Hidden tracks are left to the SDK's automatic track switch-off, which kicks in once their sinks are
+ * removed.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+final class AdaptiveSubscriptionController {
+    interface TrackLookup {
+        @Nullable
+        RemoteVideoTrack find(String trackSid);
+    }
+
+    static final class Config {
+        static final Config DISABLED = new Config(false, 250, 240, 720);
+
+        final boolean enabled;
+        final long debounceMs;
+        // tiles whose longest side is at most this many pixels subscribe at low priority
+        final int lowPriorityMaxDimension;
+        // tiles whose longest side is at least this many pixels subscribe at high priority
+        final int highPriorityMinDimension;
+
+        Config(boolean enabled, long debounceMs, int lowPriorityMaxDimension, int highPriorityMinDimension) {
+            this.enabled = enabled;
+            this.debounceMs = Math.max(0, debounceMs);
+            this.lowPriorityMaxDimension = lowPriorityMaxDimension;
+            this.highPriorityMinDimension = highPriorityMinDimension;
+        }
+
+        /**
+         * Parse {@code {enabled, debounceMs, lowPriorityMaxDimension, highPriorityMinDimension}} from JS.
+         */
+        static Config fromMap(@Nullable ReadableMap map) {
+            if (map == null) {
+                return DISABLED;
+            }
+            return new Config(
+                    !map.hasKey("enabled") || map.getBoolean("enabled"),
+                    map.hasKey("debounceMs") ? map.getInt("debounceMs") : DISABLED.debounceMs,
+                    map.hasKey("lowPriorityMaxDimension")
+                            ? map.getInt("lowPriorityMaxDimension") : DISABLED.lowPriorityMaxDimension,
+                    map.hasKey("highPriorityMinDimension")
+                            ? map.getInt("highPriorityMinDimension") : DISABLED.highPriorityMinDimension
+            );
+        }
+    }
+
+    private static final class Tile {
+        @Nullable String trackSid;
+        int width;
+        int height;
+        boolean visible = true;
+    }
+
+    private static final class AppliedState {
+        final RemoteVideoTrack track;
+        int width;
+        int height;
+        @Nullable TrackPriority priority;
+
+        AppliedState(RemoteVideoTrack track) {
+            this.track = track;
+        }
+    }
+
+    private final TrackLookup trackLookup;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<PatchedVideoView, Tile> tiles = new WeakHashMap<>();
+    private final Map<String, AppliedState> applied = new HashMap<>();
+    private final Set<String> dirtyTrackSids = new HashSet<>();
+    private final Runnable applyRunnable = this::apply;
+    private Config config = Config.DISABLED;
+
+    AdaptiveSubscriptionController(TrackLookup trackLookup) {
+        this.trackLookup = trackLookup;
+    }
+
+    void setConfig(Config config) {
+        this.config = config;
+        applied.clear();
+        dirtyTrackSids.addAll(trackSidsOfTiles());
+        scheduleApply();
+    }
+
+    boolean isEnabled() {
+        return config.enabled;
+    }
+
+    void setTrackSid(PatchedVideoView view, @Nullable String trackSid) {
+        Tile tile = tile(view);
+        markDirty(tile.trackSid);
+        tile.trackSid = trackSid == null || trackSid.isEmpty() ? null : trackSid;
+        markDirty(tile.trackSid);
+    }
+
+    void setSize(PatchedVideoView view, int width, int height) {
+        Tile tile = tile(view);
+        if (tile.width != width || tile.height != height) {
+            tile.width = width;
+            tile.height = height;
+            markDirty(tile.trackSid);
+        }
+    }
+
+    void setVisible(PatchedVideoView view, boolean visible) {
+        Tile tile = tile(view);
+        if (tile.visible != visible) {
+            tile.visible = visible;
+            markDirty(tile.trackSid);
+        }
+    }
+
+    /**
+     * A track was (re)subscribed, its preferences have to be sent again.
+     */
+    void onTrackSubscribed(String trackSid) {
+        applied.remove(trackSid);
+        markDirty(trackSid);
+    }
+
+    void onTrackUnsubscribed(String trackSid) {
+        applied.remove(trackSid);
+        dirtyTrackSids.remove(trackSid);
+    }
+
+    void reset() {
+        handler.removeCallbacks(applyRunnable);
+        applied.clear();
+        dirtyTrackSids.clear();
+    }
+
+    private Tile tile(PatchedVideoView view) {
+        Tile tile = tiles.get(view);
+        if (tile == null) {
+            tile = new Tile();
+            tiles.put(view, tile);
+        }
+        return tile;
+    }
+
+    private Set<String> trackSidsOfTiles() {
+        Set<String> trackSids = new HashSet<>();
+        for (Tile tile : tiles.values()) {
+            if (tile.trackSid != null) {
+                trackSids.add(tile.trackSid);
+            }
+        }
+        return trackSids;
+    }
+
+    private void markDirty(@Nullable String trackSid) {
+        if (trackSid != null && dirtyTrackSids.add(trackSid)) {
+            scheduleApply();
+        }
+    }
+
+    private void scheduleApply() {
+        if (!config.enabled) {
+            return;
+        }
+        // restart the delay on every change so a burst of layout passes results in a single update
+        handler.removeCallbacks(applyRunnable);
+        handler.postDelayed(applyRunnable, config.debounceMs);
+    }
+
+    private void apply() {
+        if (!config.enabled) {
+            dirtyTrackSids.clear();
+            return;
+        }
+        for (String trackSid : dirtyTrackSids) {
+            RemoteVideoTrack track = trackLookup.find(trackSid);
+            if (track != null) {
+                apply(trackSid, track);
+            }
+        }
+        dirtyTrackSids.clear();
+    }
+
+    private void apply(String trackSid, RemoteVideoTrack track) {
+        int width = 0;
+        int height = 0;
+        for (Tile tile : tiles.values()) {
+            if (tile.visible && trackSid.equals(tile.trackSid)) {
+                width = Math.max(width, tile.width);
+                height = Math.max(height, tile.height);
+            }
+        }
+        if (width == 0 || height == 0) {
+            // not on screen, the SDK switches it off once no sink is attached
+            return;
+        }
+
+        AppliedState state = applied.get(trackSid);
+        if (state == null || state.track != track) {
+            state = new AppliedState(track);
+            applied.put(trackSid, state);
+        }
+
+        if (state.width != width || state.height != height) {
+            Log.d(TwilioPackage.TAG, "AdaptiveSubscription: " + trackSid + " render dimensions " + width + "x" + height);
+            track.setContentPreferences(new VideoContentPreferences.Builder()
+                    .renderDimensions(new VideoDimensions(width, height))
+                    .build());
+            state.width = width;
+            state.height = height;
+        }
+
+        TrackPriority priority = priorityFor(Math.max(width, height));
+        if (state.priority != priority) {
+            Log.d(TwilioPackage.TAG, "AdaptiveSubscription: " + trackSid + " priority " + priority);
+            track.setPriority(priority);
+            state.priority = priority;
+        }
+    }
+
+    private TrackPriority priorityFor(int longestSide) {
+        if (longestSide <= config.lowPriorityMaxDimension) {
+            return TrackPriority.LOW;
+        }
+        if (longestSide >= config.highPriorityMinDimension) {
+            return TrackPriority.HIGH;
+        }
+        return TrackPriority.STANDARD;
+    }
+}
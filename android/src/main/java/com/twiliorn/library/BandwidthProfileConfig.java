@@ -0,0 +1,122 @@
+package com.twiliorn.library;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.twilio.video.BandwidthProfileMode;
+import com.twilio.video.BandwidthProfileOptions;
+import com.twilio.video.ClientTrackSwitchOffControl;
+import com.twilio.video.TrackPriority;
+import com.twilio.video.TrackSwitchOffMode;
+import com.twilio.video.VideoBandwidthProfileOptions;
+import com.twilio.video.VideoContentPreferencesMode;
+
+import java.util.Locale;
+
+/**
+ * The video bandwidth profile passed to connect. Unset fields keep the SDK defaults.
+ */
+final class BandwidthProfileConfig {
+    static final BandwidthProfileConfig NONE = new BandwidthProfileConfig(null, null, null, null, null, null);
+
+    @Nullable final BandwidthProfileMode mode;
+    // kbps
+    @Nullable final Long maxSubscriptionBitrate;
+    @Nullable final TrackPriority dominantSpeakerPriority;
+    @Nullable final TrackSwitchOffMode trackSwitchOffMode;
+    @Nullable final ClientTrackSwitchOffControl clientTrackSwitchOffControl;
+    @Nullable final VideoContentPreferencesMode videoContentPreferencesMode;
+
+    private BandwidthProfileConfig(
+            @Nullable BandwidthProfileMode mode,
+            @Nullable Long maxSubscriptionBitrate,
+            @Nullable TrackPriority dominantSpeakerPriority,
+            @Nullable TrackSwitchOffMode trackSwitchOffMode,
+            @Nullable ClientTrackSwitchOffControl clientTrackSwitchOffControl,
+            @Nullable VideoContentPreferencesMode videoContentPreferencesMode
+    ) {
+        this.mode = mode;
+        this.maxSubscriptionBitrate = maxSubscriptionBitrate;
+        this.dominantSpeakerPriority = dominantSpeakerPriority;
+        this.trackSwitchOffMode = trackSwitchOffMode;
+        this.clientTrackSwitchOffControl = clientTrackSwitchOffControl;
+        this.videoContentPreferencesMode = videoContentPreferencesMode;
+    }
+
+    /**
+     * Parse {@code {mode, maxSubscriptionBitrate, dominantSpeakerPriority, trackSwitchOffMode,
+     * clientTrackSwitchOffControl, videoContentPreferencesMode}} from JS. Enum values are the lower case SDK names,
+     * e.g. {@code mode: 'grid'}.
+     */
+    static BandwidthProfileConfig fromMap(@Nullable ReadableMap map) {
+        if (map == null) {
+            return NONE;
+        }
+        return new BandwidthProfileConfig(
+                parseEnum(map, "mode", BandwidthProfileMode.class),
+                map.hasKey("maxSubscriptionBitrate") ? (long) map.getDouble("maxSubscriptionBitrate") : null,
+                parseEnum(map, "dominantSpeakerPriority", TrackPriority.class),
+                parseEnum(map, "trackSwitchOffMode", TrackSwitchOffMode.class),
+                parseEnum(map, "clientTrackSwitchOffControl", ClientTrackSwitchOffControl.class),
+                parseEnum(map, "videoContentPreferencesMode", VideoContentPreferencesMode.class)
+        );
+    }
+
+    /**
+     * Returns the options for connect, or null if neither this profile nor adaptive subscription needs one.
+     * Adaptive subscription sets render dimensions itself, so it forces manual video content preferences.
+     */
+    @Nullable
+    BandwidthProfileOptions toOptions(AdaptiveSubscriptionController.Config adaptiveSubscription) {
+        if (this == NONE && !adaptiveSubscription.enabled) {
+            return null;
+        }
+        VideoBandwidthProfileOptions.Builder builder = new VideoBandwidthProfileOptions.Builder();
+        if (mode != null) {
+            builder.mode(mode);
+        }
+        if (maxSubscriptionBitrate != null) {
+            builder.maxSubscriptionBitrate(maxSubscriptionBitrate);
+        }
+        if (dominantSpeakerPriority != null) {
+            builder.dominantSpeakerPriority(dominantSpeakerPriority);
+        }
+        if (trackSwitchOffMode != null) {
+            builder.trackSwitchOffMode(trackSwitchOffMode);
+        }
+        if (adaptiveSubscription.enabled) {
+            if (videoContentPreferencesMode == VideoContentPreferencesMode.AUTO) {
+                Log.w(TwilioPackage.TAG, "Adaptive subscription needs manual video content preferences, ignoring auto");
+            }
+            builder.videoContentPreferencesMode(VideoContentPreferencesMode.MANUAL);
+            // off-screen tiles remove their sinks, which lets the SDK switch their tracks off
+            builder.clientTrackSwitchOffControl(clientTrackSwitchOffControl != null
+                    ? clientTrackSwitchOffControl
+                    : ClientTrackSwitchOffControl.AUTO);
+        } else {
+            if (videoContentPreferencesMode != null) {
+                builder.videoContentPreferencesMode(videoContentPreferencesMode);
+            }
+            if (clientTrackSwitchOffControl != null) {
+                builder.clientTrackSwitchOffControl(clientTrackSwitchOffControl);
+            }
+        }
+        return new BandwidthProfileOptions(builder.build());
+    }
+
+    @Nullable
+    private static <E extends Enum<E>> E parseEnum(ReadableMap map, String key, Class<E> type) {
+        if (!map.hasKey(key) || map.isNull(key)) {
+            return null;
+        }
+        String value = map.getString(key);
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.US));
+        } catch (IllegalArgumentException e) {
+            Log.w(TwilioPackage.TAG, "Ignoring unknown bandwidth profile " + key + ": " + value);
+            return null;
+        }
+    }
+}
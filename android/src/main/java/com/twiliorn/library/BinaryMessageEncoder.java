@@ -0,0 +1,46 @@
+package com.twiliorn.library;
+
+import android.util.Base64;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Base64 encodes the remaining bytes of received binary data track messages for the bridge. Heap buffers are encoded
+ * in place, honoring their array offset, position and limit, so slices only send their own bytes; direct buffers are
+ * copied into a reused scratch array first. The buffer's position is left untouched.
+ * <p>
+ * Not thread safe, use one per thread that receives messages.
+ */
+final class BinaryMessageEncoder {
+    interface Base64Encoder {
+        String encode(byte[] input, int offset, int length);
+    }
+
+    private static final Base64Encoder ANDROID_BASE64 =
+            (input, offset, length) -> Base64.encodeToString(input, offset, length, Base64.NO_WRAP);
+
+    private final Base64Encoder base64;
+    private byte[] scratch = new byte[0];
+
+    BinaryMessageEncoder() {
+        this(ANDROID_BASE64);
+    }
+
+    // lets JVM tests encode without android.util.Base64
+    BinaryMessageEncoder(Base64Encoder base64) {
+        this.base64 = base64;
+    }
+
+    String encode(ByteBuffer message) {
+        int length = message.remaining();
+        if (message.hasArray()) {
+            return base64.encode(message.array(), message.arrayOffset() + message.position(), length);
+        }
+        if (scratch.length < length) {
+            scratch = new byte[length];
+        }
+        // read through a duplicate, the caller's position stays where it was
+        message.duplicate().get(scratch, 0, length);
+        return base64.encode(scratch, 0, length);
+    }
+}
@@ -0,0 +1,264 @@
+package com.twiliorn.library;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.hardware.Camera;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import tvi.webrtc.Camera1Enumerator;
+import tvi.webrtc.CameraEnumerationAndroid.CaptureFormat;
+
+/**
+ * The cameras of the device with their facing and supported formats. Enumerating them opens every camera to read
+ * its parameters, so it is done on the first local video request and reused by every local video track created
+ * after it.
+ * <p>
+ * Formats are only read once the CAMERA permission is granted, and a camera whose formats couldn't be read is
+ * enumerated again on the next request instead of being cached as unsupported. They are read straight from the
+ * camera parameters rather than through Camera1Enumerator, which keeps a process wide cache of its first attempt.
+ * <p>
+ * The inventory is rebuilt when CameraManager reports a camera it didn't contain, e.g. an external camera being
+ * plugged in, once no local capture is running. Cameras becoming unavailable don't invalidate it, that also happens
+ * whenever one is opened.
+ */
+final class CameraInventory {
+    static final class Device {
+        final String name;
+        final boolean frontFacing;
+        final boolean backFacing;
+        final List<CaptureFormat> formats;
+
+        Device(String name, boolean frontFacing, boolean backFacing, List<CaptureFormat> formats) {
+            this.name = name;
+            this.frontFacing = frontFacing;
+            this.backFacing = backFacing;
+            this.formats = formats;
+        }
+    }
+
+    private static final class Snapshot {
+        final List<Device> devices;
+        // camera2 ids at the time of the enumeration, to spot cameras that were added since
+        final Set<String> cameraIds;
+        // false if the formats of some camera couldn't be read
+        final boolean complete;
+
+        Snapshot(List<Device> devices, Set<String> cameraIds, boolean complete) {
+            this.devices = devices;
+            this.cameraIds = cameraIds;
+            this.complete = complete;
+        }
+    }
+
+    // Camera1Enumerator names its cameras "Camera <index>, Facing <facing>, Orientation <orientation>"
+    private static final Pattern CAMERA_INDEX = Pattern.compile("^Camera (\\d+),");
+
+    // read without a lock, so the availability callback on the main thread never waits for an enumeration
+    @Nullable private static volatile Snapshot snapshot;
+    private static volatile boolean captureActive;
+    // set when a camera was added while a capture was running
+    private static volatile boolean invalidatePending;
+    private static final Object enumerationLock = new Object();
+    // guarded by enumerationLock
+    @Nullable private static Context appContext;
+    @Nullable private static CameraManager cameraManager;
+
+    private static final CameraManager.AvailabilityCallback availabilityCallback =
+            new CameraManager.AvailabilityCallback() {
+                @Override
+                public void onCameraAvailable(@NonNull String cameraId) {
+                    Snapshot current = snapshot;
+                    if (current != null && !current.cameraIds.contains(cameraId)) {
+                        Log.i(TwilioPackage.TAG, "CameraInventory: camera " + cameraId + " was added");
+                        invalidate();
+                    }
+                }
+            };
+
+    private CameraInventory() {}
+
+    /**
+     * The cameras, enumerating them on the calling thread if that hasn't happened yet or some camera's formats
+     * couldn't be read last time.
+     */
+    static List<Device> getDevices(Context context) {
+        synchronized (enumerationLock) {
+            if (appContext == null) {
+                appContext = context.getApplicationContext();
+                cameraManager = (CameraManager) appContext.getSystemService(Context.CAMERA_SERVICE);
+                if (cameraManager != null) {
+                    cameraManager.registerAvailabilityCallback(availabilityCallback, new Handler(Looper.getMainLooper()));
+                }
+            }
+        }
+        return getSnapshot().devices;
+    }
+
+    @Nullable
+    static Device find(@Nullable String name) {
+        Snapshot current = snapshot;
+        if (name == null || current == null) {
+            return null;
+        }
+        for (Device device : current.devices) {
+            if (device.name.equals(name)) {
+                return device;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The formats of camera {@code name} from the last enumeration, empty if it wasn't enumerated.
+     */
+    static List<CaptureFormat> getSupportedFormats(@Nullable String name) {
+        Device device = find(name);
+        return device != null ? device.formats : Collections.<CaptureFormat>emptyList();
+    }
+
+    /**
+     * Tell the inventory whether a local capture is running. Cameras are not opened for enumeration while one is,
+     * an invalidation in the meantime is applied once it stops.
+     */
+    static void setCaptureActive(boolean active) {
+        captureActive = active;
+        if (!active && invalidatePending) {
+            invalidate();
+        }
+    }
+
+    static void invalidate() {
+        if (captureActive) {
+            invalidatePending = true;
+            return;
+        }
+        invalidatePending = false;
+        snapshot = null;
+        loadInBackground();
+    }
+
+    private static void loadInBackground() {
+        Thread thread = new Thread(CameraInventory::getSnapshot, "CameraInventory");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    private static Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null && (current.complete || captureActive)) {
+            return current;
+        }
+        synchronized (enumerationLock) {
+            current = snapshot;
+            if (current != null && (current.complete || captureActive)) {
+                return current;
+            }
+            current = enumerate(current);
+            snapshot = current;
+            return current;
+        }
+    }
+
+    // guarded by enumerationLock
+    private static Snapshot enumerate(@Nullable Snapshot previous) {
+        long start = SystemClock.elapsedRealtime();
+        Set<String> cameraIds = new HashSet<>();
+        if (cameraManager != null) {
+            try {
+                cameraIds.addAll(Arrays.asList(cameraManager.getCameraIdList()));
+            } catch (CameraAccessException | RuntimeException e) {
+                Log.w(TwilioPackage.TAG, "CameraInventory: unable to list camera ids", e);
+            }
+        }
+
+        boolean permissionGranted = appContext != null && appContext.checkPermission(
+                Manifest.permission.CAMERA, Process.myPid(), Process.myUid()) == PackageManager.PERMISSION_GRANTED;
+        boolean complete = permissionGranted;
+        Camera1Enumerator enumerator = new Camera1Enumerator();
+        List<Device> devices = new ArrayList<>();
+        for (String name : enumerator.getDeviceNames()) {
+            List<CaptureFormat> formats = previous != null ? formatsOf(previous, name) : null;
+            if (formats == null && permissionGranted) {
+                formats = readFormats(name);
+            }
+            if (formats == null) {
+                complete = false;
+            }
+            devices.add(new Device(
+                    name,
+                    enumerator.isFrontFacing(name),
+                    enumerator.isBackFacing(name),
+                    formats != null ? formats : Collections.<CaptureFormat>emptyList()));
+        }
+        Log.i(TwilioPackage.TAG, "CameraInventory: found " + devices.size() + " cameras in "
+                + (SystemClock.elapsedRealtime() - start) + " ms"
+                + (permissionGranted ? "" : ", formats not read without the CAMERA permission"));
+        return new Snapshot(Collections.unmodifiableList(devices), cameraIds, complete);
+    }
+
+    // formats read by an earlier enumeration, null if there were none
+    @Nullable
+    private static List<CaptureFormat> formatsOf(Snapshot snapshot, String name) {
+        for (Device device : snapshot.devices) {
+            if (device.name.equals(name) && !device.formats.isEmpty()) {
+                return device.formats;
+            }
+        }
+        return null;
+    }
+
+    // the preview sizes at the camera's fastest frame rate range, as Camera1Enumerator reports them; null on failure
+    @Nullable
+    private static List<CaptureFormat> readFormats(String name) {
+        Matcher matcher = CAMERA_INDEX.matcher(name);
+        if (!matcher.find()) {
+            Log.w(TwilioPackage.TAG, "CameraInventory: unexpected camera name " + name);
+            return null;
+        }
+        Camera camera = null;
+        try {
+            camera = Camera.open(Integer.parseInt(matcher.group(1)));
+            Camera.Parameters parameters = camera.getParameters();
+            int minFps = 0;
+            int maxFps = 0;
+            List<int[]> fpsRanges = parameters.getSupportedPreviewFpsRange();
+            if (fpsRanges != null && !fpsRanges.isEmpty()) {
+                // the ranges are sorted, the last one is the fastest
+                int[] range = fpsRanges.get(fpsRanges.size() - 1);
+                minFps = range[Camera.PREVIEW_FPS_MIN_INDEX];
+                maxFps = range[Camera.PREVIEW_FPS_MAX_INDEX];
+            }
+            List<CaptureFormat> formats = new ArrayList<>();
+            for (Camera.Size size : parameters.getSupportedPreviewSizes()) {
+                formats.add(new CaptureFormat(size.width, size.height, minFps, maxFps));
+            }
+            return formats.isEmpty() ? null : Collections.unmodifiableList(formats);
+        } catch (RuntimeException e) {
+            Log.w(TwilioPackage.TAG, "CameraInventory: unable to read formats of camera " + name, e);
+            return null;
+        } finally {
+            if (camera != null) {
+                camera.release();
+            }
+        }
+    }
+}
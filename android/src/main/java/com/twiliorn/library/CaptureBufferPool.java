@@ -0,0 +1,181 @@
+package com.twiliorn.library;
+
+import android.graphics.Bitmap;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Size-keyed pool of the buffers used by the frame capture pipeline (NV21 and RGBA arrays, the bitmaps RGBA frames
+ * are compressed from, and JPEG output streams), so that steady-state capture does not allocate full-frame buffers.
+ * <p>
+ * Pooled memory is bounded by {@code maxPooledBytes}. When a released buffer would exceed the bound, buffers of other
+ * sizes are evicted first (e.g. after a camera switch changed the frame size); if it still does not fit it is dropped.
+ * <p>
+ * All methods are thread safe.
+ */
+final class CaptureBufferPool {
+    static final int DEFAULT_MAX_POOLED_BYTES = 32 * 1024 * 1024;
+    private static final int INITIAL_JPEG_CAPACITY = 256 * 1024;
+
+    private final int maxPooledBytes;
+    private final Map<Integer, ArrayDeque<byte[]>> byteArrays = new HashMap<>();
+    private final ArrayDeque<JpegOutputStream> outputStreams = new ArrayDeque<>();
+    private final ArrayDeque<Bitmap> bitmaps = new ArrayDeque<>();
+    private int pooledBytes = 0;
+    // buffer memory allocated because the pool had nothing to hand out, including output stream growth
+    private long allocatedBytes = 0;
+
+    CaptureBufferPool(int maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+    /**
+     * ByteArrayOutputStream that exposes its backing array so encoded images can be written out or decoded without
+     * the copy made by {@link #toByteArray()}.
+     */
+    static final class JpegOutputStream extends ByteArrayOutputStream {
+        // capacity when handed out, to account for growth while writing
+        private int acquiredCapacity;
+
+        JpegOutputStream(int size) {
+            super(size);
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+
+    synchronized byte[] acquireByteArray(int size) {
+        ArrayDeque<byte[]> arrays = byteArrays.get(size);
+        if (arrays != null && !arrays.isEmpty()) {
+            pooledBytes -= size;
+            return arrays.pop();
+        }
+        allocatedBytes += size;
+        return new byte[size];
+    }
+
+    synchronized void releaseByteArray(byte[] array) {
+        if (!makeRoom(array.length, array.length)) {
+            return;
+        }
+        ArrayDeque<byte[]> arrays = byteArrays.get(array.length);
+        if (arrays == null) {
+            arrays = new ArrayDeque<>();
+            byteArrays.put(array.length, arrays);
+        }
+        arrays.push(array);
+        pooledBytes += array.length;
+    }
+
+    synchronized JpegOutputStream acquireOutputStream() {
+        JpegOutputStream stream = outputStreams.poll();
+        if (stream == null) {
+            stream = new JpegOutputStream(INITIAL_JPEG_CAPACITY);
+            allocatedBytes += INITIAL_JPEG_CAPACITY;
+        } else {
+            pooledBytes -= stream.capacity();
+            stream.reset();
+        }
+        stream.acquiredCapacity = stream.capacity();
+        return stream;
+    }
+
+    synchronized void releaseOutputStream(JpegOutputStream stream) {
+        if (stream.capacity() > stream.acquiredCapacity) {
+            allocatedBytes += stream.capacity();
+        }
+        if (!makeRoom(stream.capacity(), -1)) {
+            return;
+        }
+        outputStreams.push(stream);
+        pooledBytes += stream.capacity();
+    }
+
+    /**
+     * A mutable ARGB_8888 bitmap of the given size, for {@link Bitmap#copyPixelsFromBuffer} to overwrite.
+     */
+    synchronized Bitmap acquireBitmap(int width, int height) {
+        Iterator<Bitmap> pooled = bitmaps.iterator();
+        while (pooled.hasNext()) {
+            Bitmap bitmap = pooled.next();
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height) {
+                pooled.remove();
+                pooledBytes -= bitmapBytes(bitmap);
+                return bitmap;
+            }
+        }
+        allocatedBytes += (long) width * height * TextureFrameEncoder.BYTES_PER_PIXEL;
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    synchronized void releaseBitmap(Bitmap bitmap) {
+        int size = bitmapBytes(bitmap);
+        if (!makeRoom(size, -1)) {
+            bitmap.recycle();
+            return;
+        }
+        bitmaps.push(bitmap);
+        pooledBytes += size;
+    }
+
+    /**
+     * Total bytes allocated for buffers the pool could not supply, for measuring steady-state allocation.
+     */
+    synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Drop every pooled buffer.
+     */
+    synchronized void clear() {
+        byteArrays.clear();
+        outputStreams.clear();
+        for (Bitmap bitmap : bitmaps) {
+            bitmap.recycle();
+        }
+        bitmaps.clear();
+        pooledBytes = 0;
+    }
+
+    /**
+     * Evict buffers whose size does not match the one being released until {@code size} more bytes fit.
+     * Returns false if the buffer cannot be pooled.
+     */
+    private boolean makeRoom(int size, int keepArraySize) {
+        if (size > maxPooledBytes) {
+            return false;
+        }
+        Iterator<Map.Entry<Integer, ArrayDeque<byte[]>>> arrays = byteArrays.entrySet().iterator();
+        while (pooledBytes + size > maxPooledBytes && arrays.hasNext()) {
+            Map.Entry<Integer, ArrayDeque<byte[]>> entry = arrays.next();
+            if (entry.getKey() != keepArraySize) {
+                pooledBytes -= entry.getKey() * entry.getValue().size();
+                arrays.remove();
+            }
+        }
+        while (pooledBytes + size > maxPooledBytes && !outputStreams.isEmpty()) {
+            pooledBytes -= outputStreams.removeLast().capacity();
+        }
+        while (pooledBytes + size > maxPooledBytes && !bitmaps.isEmpty()) {
+            Bitmap bitmap = bitmaps.removeLast();
+            pooledBytes -= bitmapBytes(bitmap);
+            bitmap.recycle();
+        }
+        return pooledBytes + size <= maxPooledBytes;
+    }
+
+    private static int bitmapBytes(Bitmap bitmap) {
+        return bitmap.getWidth() * bitmap.getHeight() * TextureFrameEncoder.BYTES_PER_PIXEL;
+    }
+}
@@ -0,0 +1,72 @@
+package com.twiliorn.library;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.twilio.video.VideoDimensions;
+import com.twilio.video.VideoFormat;
+
+import java.util.List;
+
+import tvi.webrtc.CameraEnumerationAndroid.CaptureFormat;
+
+/**
+ * Picks the camera format closest to the requested capture size and frame rate from what the device reports, so
+ * the camera isn't asked for a size it would have to emulate or a frame rate it can't sustain.
+ */
+final class CaptureFormatSelector {
+    static final VideoFormat DEFAULT_FORMAT = new VideoFormat(VideoDimensions.HD_720P_VIDEO_DIMENSIONS, 30);
+
+    private CaptureFormatSelector() {}
+
+    /**
+     * Parse {@code {width, height, fps}} from JS, missing values are taken from {@code fallback}.
+     */
+    static VideoFormat fromMap(@Nullable ReadableMap map, VideoFormat fallback) {
+        if (map == null) {
+            return fallback;
+        }
+        int width = map.hasKey("width") ? map.getInt("width") : fallback.dimensions.width;
+        int height = map.hasKey("height") ? map.getInt("height") : fallback.dimensions.height;
+        int fps = map.hasKey("fps") ? map.getInt("fps") : fallback.framerate;
+        if (width <= 0 || height <= 0 || fps <= 0) {
+            Log.w(TwilioPackage.TAG, "Ignoring invalid video format " + width + "x" + height + "@" + fps);
+            return fallback;
+        }
+        return new VideoFormat(new VideoDimensions(width, height), fps);
+    }
+
+    /**
+     * Returns the format in {@code formats} closest to {@code target}, or {@code target} itself if there are none.
+     */
+    static VideoFormat select(@Nullable List<CaptureFormat> formats, VideoFormat target) {
+        if (formats == null || formats.isEmpty()) {
+            return target;
+        }
+        // camera formats are landscape, the requested size may not be
+        int targetWidth = Math.max(target.dimensions.width, target.dimensions.height);
+        int targetHeight = Math.min(target.dimensions.width, target.dimensions.height);
+
+        CaptureFormat best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (CaptureFormat format : formats) {
+            int distance = Math.abs(format.width - targetWidth) + Math.abs(format.height - targetHeight);
+            if (distance < bestDistance) {
+                best = format;
+                bestDistance = distance;
+            }
+        }
+
+        // the fastest range offered at that size, capped at the requested rate
+        int maxFps = 0;
+        for (CaptureFormat format : formats) {
+            if (format.width == best.width && format.height == best.height && format.framerate != null) {
+                maxFps = Math.max(maxFps, (format.framerate.max + 999) / 1000);
+            }
+        }
+        int fps = maxFps > 0 ? Math.min(target.framerate, maxFps) : target.framerate;
+        return new VideoFormat(new VideoDimensions(best.width, best.height), fps);
+    }
+}
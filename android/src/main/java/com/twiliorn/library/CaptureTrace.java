@@ -0,0 +1,71 @@
+package com.twiliorn.library;
+
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * Opt-in per-capture stage timings and buffer allocations, logged after each encode so changes to the capture
+ * pipeline can be followed on a device. Enabled with {@code adb shell setprop log.tag.rntwilio DEBUG}; otherwise
+ * {@link #start} hands out a shared no-op trace and captures pay for neither the timing nor the formatting.
+ * The conversions are benchmarked on the JVM by I420ToNV21ConverterBenchmark, the encode paths on a device by
+ * CaptureEncodeBenchmark.
+ * <p>
+ * Not thread safe, each capture has its own trace.
+ */
+final class CaptureTrace {
+    private static final int MAX_STAGES = 8;
+    private static final CaptureTrace DISABLED = new CaptureTrace(null);
+
+    private final CaptureBufferPool bufferPool;
+    private final long startNs;
+    private final long startAllocatedBytes;
+    private final String[] stageNames = new String[MAX_STAGES];
+    private final long[] stageNs = new long[MAX_STAGES];
+    private int stageCount;
+    private long lastMarkNs;
+
+    private CaptureTrace(CaptureBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+        this.startNs = bufferPool != null ? System.nanoTime() : 0;
+        this.startAllocatedBytes = bufferPool != null ? bufferPool.getAllocatedBytes() : 0;
+        this.lastMarkNs = startNs;
+    }
+
+    static CaptureTrace start(CaptureBufferPool bufferPool) {
+        return Log.isLoggable(TwilioPackage.TAG, Log.DEBUG) ? new CaptureTrace(bufferPool) : DISABLED;
+    }
+
+    boolean isEnabled() {
+        return this != DISABLED;
+    }
+
+    /**
+     * Record the time since the previous mark as {@code stage}.
+     */
+    void mark(String stage) {
+        if (!isEnabled() || stageCount == MAX_STAGES) {
+            return;
+        }
+        long now = System.nanoTime();
+        stageNames[stageCount] = stage;
+        stageNs[stageCount++] = now - lastMarkNs;
+        lastMarkNs = now;
+    }
+
+    /**
+     * Allocations are counted pool-wide, so they include concurrent captures on other workers.
+     */
+    String summary() {
+        if (!isEnabled()) {
+            return "";
+        }
+        StringBuilder summary = new StringBuilder();
+        for (int i = 0; i < stageCount; i++) {
+            summary.append(String.format(Locale.US, "%s %.2f ms, ", stageNames[i], stageNs[i] / 1e6));
+        }
+        summary.append(String.format(Locale.US, "total %.2f ms, %d bytes allocated",
+                (System.nanoTime() - startNs) / 1e6, bufferPool.getAllocatedBytes() - startAllocatedBytes));
+        return summary.toString();
+    }
+}
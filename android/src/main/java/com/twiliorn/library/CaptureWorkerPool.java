@@ -0,0 +1,102 @@
+package com.twiliorn.library;
+
+import android.util.Log;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Worker threads shared by every capturer and sink for encoding captured frames.
+ * <p>
+ * The pool is sized to the number of cores, capped by {@link #setMaxThreads(int)} (the maxCaptureThreads prop), and
+ * has a bounded task queue: when it is full {@link #execute(Runnable)} returns false and the caller drops the frame.
+ * Idle threads time out, and {@link #shutdown()} is called when the video view is released; the next capture starts
+ * a new pool.
+ */
+final class CaptureWorkerPool {
+    // encodes are short, more threads only compete with the camera and the renderers for cores
+    static final int DEFAULT_MAX_THREADS = 4;
+    static final int MAX_QUEUED_TASKS = 8;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static ThreadPoolExecutor executor;
+    private static int maxThreads = DEFAULT_MAX_THREADS;
+
+    private CaptureWorkerPool() {}
+
+    /**
+     * Run a capture task, or return false if the pool is saturated.
+     */
+    static synchronized boolean execute(Runnable task) {
+        if (executor == null) {
+            executor = createExecutor(poolSize());
+        }
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            Log.w(TwilioPackage.TAG, "CaptureWorkerPool: " + executor.getQueue().size() + " captures queued, rejecting");
+            return false;
+        }
+    }
+
+    /**
+     * Limit the number of encoder threads, at least one. Takes effect immediately if the pool is running.
+     */
+    static synchronized void setMaxThreads(int maxThreads) {
+        CaptureWorkerPool.maxThreads = Math.max(1, maxThreads);
+        if (executor != null) {
+            int size = poolSize();
+            // keep core <= max while resizing in either direction
+            if (size > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(size);
+                executor.setCorePoolSize(size);
+            } else {
+                executor.setCorePoolSize(size);
+                executor.setMaximumPoolSize(size);
+            }
+        }
+    }
+
+    /**
+     * Stop accepting captures. Already queued captures still run so their frames are released.
+     */
+    static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    private static int poolSize() {
+        return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), maxThreads));
+    }
+
+    private static ThreadPoolExecutor createExecutor(int size) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                size,
+                size,
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED_TASKS),
+                new CaptureThreadFactory()
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static final class CaptureThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "TwilioFrameCapture-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
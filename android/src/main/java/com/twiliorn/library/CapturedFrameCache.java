@@ -0,0 +1,91 @@
+package com.twiliorn.library;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide LRU cache of encoded frames captured with {@code captureFrameToMemory}, keyed by capture id.
+ * <p>
+ * JS only receives the capture id; native modules (e.g. an upload or blob module) read the encoded bytes with
+ * {@link #get(String)} so the image never goes through the filesystem. Entries are evicted least recently used first
+ * once their total size exceeds {@link #DEFAULT_MAX_BYTES}, and can be freed explicitly with {@link #remove(String)}.
+ */
+public final class CapturedFrameCache {
+    public static final int DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+
+    // access ordered so iteration starts at the least recently used entry
+    private static final LinkedHashMap<String, byte[]> frames = new LinkedHashMap<>(16, 0.75f, true);
+    private static long maxBytes = DEFAULT_MAX_BYTES;
+    private static long totalBytes = 0;
+
+    private CapturedFrameCache() {}
+
+    /**
+     * Store an encoded frame under the given capture id, replacing any previous frame with the same id. Returns false,
+     * and only drops the previous frame, if the frame alone is larger than the cache.
+     */
+    static synchronized boolean put(String captureId, byte[] data) {
+        if (data.length > maxBytes) {
+            remove(captureId);
+            return false;
+        }
+        byte[] previous = frames.put(captureId, data);
+        if (previous != null) {
+            totalBytes -= previous.length;
+        }
+        totalBytes += data.length;
+        trimToSize(maxBytes);
+        return true;
+    }
+
+    static synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns a read-only view of the encoded frame for the given capture id, or null if it was freed or evicted.
+     */
+    @Nullable
+    public static synchronized ByteBuffer get(String captureId) {
+        byte[] data = frames.get(captureId);
+        return data == null ? null : ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
+    /**
+     * Free the frame for the given capture id. Returns false if there was none.
+     */
+    public static synchronized boolean remove(String captureId) {
+        byte[] data = frames.remove(captureId);
+        if (data == null) {
+            return false;
+        }
+        totalBytes -= data.length;
+        return true;
+    }
+
+    public static synchronized void clear() {
+        frames.clear();
+        totalBytes = 0;
+    }
+
+    public static synchronized void setMaxBytes(long maxBytes) {
+        CapturedFrameCache.maxBytes = maxBytes;
+        trimToSize(maxBytes);
+    }
+
+    private static void trimToSize(long maxBytes) {
+        Iterator<Map.Entry<String, byte[]>> iterator = frames.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, byte[]> eldest = iterator.next();
+            Log.d(TwilioPackage.TAG, "CapturedFrameCache: evicting " + eldest.getKey());
+            totalBytes -= eldest.getValue().length;
+            iterator.remove();
+        }
+    }
+}
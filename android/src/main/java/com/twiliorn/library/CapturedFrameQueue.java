@@ -0,0 +1,66 @@
+package com.twiliorn.library;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tvi.webrtc.VideoFrame;
+
+/**
+ * Bounded, lock-free hand-off of retained frames from the capture thread to the encoder.
+ * <p>
+ * When the encoder falls behind and the queue is full, either the oldest queued frame or the offered frame is dropped,
+ * depending on the {@link DropPolicy}. The caller is responsible for releasing the dropped frame.
+ */
+final class CapturedFrameQueue {
+    enum DropPolicy {
+        DROP_OLDEST,
+        DROP_NEWEST
+    }
+
+    static final class Entry {
+        final VideoFrame frame;
+        final FrameCaptureRequest request;
+
+        Entry(VideoFrame frame, FrameCaptureRequest request) {
+            this.frame = frame;
+            this.request = request;
+        }
+    }
+
+    private final ConcurrentLinkedQueue<Entry> entries = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int capacity;
+
+    CapturedFrameQueue(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Queue an entry. Returns the entry that was dropped to stay within capacity (which is {@code entry} itself with
+     * {@link DropPolicy#DROP_NEWEST}), or null if nothing was dropped.
+     */
+    Entry offer(Entry entry, DropPolicy dropPolicy) {
+        if (size.incrementAndGet() > capacity) {
+            if (dropPolicy == DropPolicy.DROP_NEWEST) {
+                size.decrementAndGet();
+                return entry;
+            }
+            Entry oldest = entries.poll();
+            if (oldest != null) {
+                size.decrementAndGet();
+            }
+            entries.offer(entry);
+            return oldest;
+        }
+        entries.offer(entry);
+        return null;
+    }
+
+    Entry poll() {
+        Entry entry = entries.poll();
+        if (entry != null) {
+            size.decrementAndGet();
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,119 @@
+package com.twiliorn.library;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.twilio.video.DataTrackOptions;
+import com.twilio.video.EncodingParameters;
+import com.twilio.video.VideoFormat;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The Android only options of a connect command, kept together for the connection they were given for: encoding,
+ * adaptive subscription and capture, the bandwidth profile, the capture format and the data track setup.
+ */
+final class ConnectionOptions {
+    static final ConnectionOptions DEFAULT = new ConnectionOptions(
+            false,
+            null,
+            AdaptiveSubscriptionController.Config.DISABLED,
+            BandwidthProfileConfig.NONE,
+            null,
+            AdaptiveCaptureController.Config.DISABLED,
+            DataTrackBatcher.Config.DISABLED,
+            Collections.<DataTrackOptions>emptyList()
+    );
+
+    // connect command arguments, after roomName, accessToken and the flags before them
+    private static final int ENCODING_PARAMETERS = 9;
+    private static final int ADAPTIVE_SUBSCRIPTION = 10;
+    private static final int BANDWIDTH_PROFILE = 11;
+    private static final int VIDEO_FORMAT = 12;
+    private static final int ADAPTIVE_CAPTURE = 13;
+    private static final int DATA_TRACK_BATCHING = 14;
+    private static final int DATA_TRACKS = 15;
+
+    // used by iOS for a bitrate left out of encodingParameters
+    private static final int DEFAULT_AUDIO_BITRATE = 40;
+    private static final int DEFAULT_VIDEO_BITRATE = 1500;
+
+    final boolean enableVp8Simulcast;
+    // max send bitrates, null leaves them to the SDK
+    @Nullable final EncodingParameters encodingParameters;
+    final AdaptiveSubscriptionController.Config adaptiveSubscription;
+    final BandwidthProfileConfig bandwidthProfile;
+    // null keeps the capture format already requested
+    @Nullable final VideoFormat videoFormat;
+    final AdaptiveCaptureController.Config adaptiveCapture;
+    final DataTrackBatcher.Config dataTrackBatching;
+    // named data tracks published next to the default one
+    final List<DataTrackOptions> dataTracks;
+
+    ConnectionOptions(
+            boolean enableVp8Simulcast,
+            @Nullable EncodingParameters encodingParameters,
+            AdaptiveSubscriptionController.Config adaptiveSubscription,
+            BandwidthProfileConfig bandwidthProfile,
+            @Nullable VideoFormat videoFormat,
+            AdaptiveCaptureController.Config adaptiveCapture,
+            DataTrackBatcher.Config dataTrackBatching,
+            List<DataTrackOptions> dataTracks
+    ) {
+        this.enableVp8Simulcast = enableVp8Simulcast;
+        this.encodingParameters = encodingParameters;
+        this.adaptiveSubscription = adaptiveSubscription;
+        this.bandwidthProfile = bandwidthProfile;
+        this.videoFormat = videoFormat;
+        this.adaptiveCapture = adaptiveCapture;
+        this.dataTrackBatching = dataTrackBatching;
+        this.dataTracks = dataTracks;
+    }
+
+    /**
+     * Parse the options from the arguments of the connect command. Trailing arguments may be missing or null.
+     */
+    static ConnectionOptions fromArgs(ReadableArray args) {
+        ReadableMap encodingParameters = optionalMap(args, ENCODING_PARAMETERS);
+        ReadableMap videoFormat = optionalMap(args, VIDEO_FORMAT);
+        return new ConnectionOptions(
+                encodingParameters != null && encodingParameters.hasKey("enableVp8Simulcast")
+                        && encodingParameters.getBoolean("enableVp8Simulcast"),
+                buildEncodingParameters(encodingParameters),
+                AdaptiveSubscriptionController.Config.fromMap(optionalMap(args, ADAPTIVE_SUBSCRIPTION)),
+                BandwidthProfileConfig.fromMap(optionalMap(args, BANDWIDTH_PROFILE)),
+                videoFormat != null
+                        ? CaptureFormatSelector.fromMap(videoFormat, CaptureFormatSelector.DEFAULT_FORMAT) : null,
+                AdaptiveCaptureController.Config.fromMap(optionalMap(args, ADAPTIVE_CAPTURE)),
+                DataTrackBatcher.Config.fromMap(optionalMap(args, DATA_TRACK_BATCHING)),
+                NamedDataTracks.fromArray(
+                        args.size() > DATA_TRACKS && !args.isNull(DATA_TRACKS) ? args.getArray(DATA_TRACKS) : null)
+        );
+    }
+
+    // audioBitrate/videoBitrate are max send bitrates, null if neither is given. As on iOS, a missing or 0 bitrate
+    // takes the iOS default rather than lifting the limit.
+    @Nullable
+    private static EncodingParameters buildEncodingParameters(@Nullable ReadableMap encodingParameters) {
+        if (encodingParameters == null
+                || !encodingParameters.hasKey("audioBitrate") && !encodingParameters.hasKey("videoBitrate")) {
+            return null;
+        }
+        return new EncodingParameters(
+                bitrate(encodingParameters, "audioBitrate", DEFAULT_AUDIO_BITRATE),
+                bitrate(encodingParameters, "videoBitrate", DEFAULT_VIDEO_BITRATE));
+    }
+
+    private static int bitrate(ReadableMap encodingParameters, String key, int defaultBitrate) {
+        int bitrate = encodingParameters.hasKey(key) && !encodingParameters.isNull(key)
+                ? encodingParameters.getInt(key) : 0;
+        return bitrate != 0 ? bitrate : defaultBitrate;
+    }
+
+    @Nullable
+    private static ReadableMap optionalMap(ReadableArray args, int index) {
+        return args.size() > index && !args.isNull(index) ? args.getMap(index) : null;
+    }
+}
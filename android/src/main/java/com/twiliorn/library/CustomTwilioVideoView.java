@@ -10,7 +10,10 @@ package com.twiliorn.library;
 
 import java.nio.ByteBuffer;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import android.content.BroadcastReceiver;
 import android.content.Context;
@@ -23,6 +26,7 @@ import android.media.AudioManager;
 import android.os.Build;
 import android.hardware.Camera;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.StringDef;
 import androidx.lifecycle.DefaultLifecycleObserver;
 import androidx.lifecycle.LifecycleOwner;
@@ -42,6 +46,7 @@ import com.facebook.react.bridge.WritableNativeMap;
 import com.facebook.react.uimanager.ThemedReactContext;
 import com.facebook.react.uimanager.events.RCTEventEmitter;
 import com.twilio.video.AudioTrackPublication;
+import com.twilio.video.BandwidthProfileOptions;
 import com.twilio.video.BaseTrackStats;
 import com.twilio.video.CameraCapturer;
 import com.twilio.video.CameraParameterUpdater;
@@ -76,21 +81,17 @@ import com.twilio.video.StatsReport;
 import com.twilio.video.TrackPublication;
 import com.twilio.video.TwilioException;
 import com.twilio.video.Video;
-import com.twilio.video.VideoDimensions;
 import com.twilio.video.VideoFormat;
 import com.twilio.video.VideoCodec;
 
 import tvi.webrtc.voiceengine.WebRtcAudioManager;
 
-import tvi.webrtc.Camera1Enumerator;
-import tvi.webrtc.HardwareVideoEncoderFactory;
-import tvi.webrtc.HardwareVideoDecoderFactory;
-import tvi.webrtc.VideoCodecInfo;
 import com.twilio.video.H264Codec;
 import com.twilio.video.Vp8Codec;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -119,10 +120,14 @@ import static com.twiliorn.library.CustomTwilioVideoView.Events.ON_VIDEO_CHANGED
 import static com.twiliorn.library.CustomTwilioVideoView.Events.ON_DOMINANT_SPEAKER_CHANGED;
 import static com.twiliorn.library.CustomTwilioVideoView.Events.ON_LOCAL_PARTICIPANT_SUPPORTED_CODECS;
 import static com.twiliorn.library.CustomTwilioVideoView.Events.ON_FLASHLIGHT_STATUS_CHANGED;
+import static com.twiliorn.library.CustomTwilioVideoView.Events.ON_LOCAL_VIDEO_FORMAT_CHANGED;
+import static com.twiliorn.library.CustomTwilioVideoView.Events.ON_HARDWARE_CODEC_SUPPORT;
+import static com.twiliorn.library.CustomTwilioVideoView.Events.ON_EVENT_BATCH;
 
 public class CustomTwilioVideoView extends View implements DefaultLifecycleObserver, AudioManager.OnAudioFocusChangeListener {
     private static final String TAG = "rntwilio";
     private static final String DATA_TRACK_MESSAGE_THREAD_NAME = "DataTrackMessages";
+    private static final String NO_CAMERA_TO_CAPTURE = "The camera is not capturing";
     private static final String FRONT_CAMERA_TYPE = "front";
     private static final String BACK_CAMERA_TYPE = "back";
     private boolean enableRemoteAudio = false;
@@ -134,6 +139,12 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
     private boolean maintainVideoTrackInBackground = false;
     private String cameraType = "";
     private boolean enableH264Codec = false;
+    // also read on dataTrackMessageThread, received batches are only unpacked while batching is enabled
+    private volatile ConnectionOptions connectionOptions = ConnectionOptions.DEFAULT;
+    // the capture format asked for by JS, and the closest one the camera supports that the local video track uses
+    private VideoFormat requestedVideoFormat = CaptureFormatSelector.DEFAULT_FORMAT;
+    private VideoFormat localVideoFormat;
+    private final AdaptiveCaptureController adaptiveCapture;
     private String videoTrackName = "camera";
 
     @Retention(RetentionPolicy.SOURCE)
@@ -162,6 +173,9 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
             Events.ON_DOMINANT_SPEAKER_CHANGED,
             Events.ON_LOCAL_PARTICIPANT_SUPPORTED_CODECS,
             Events.ON_FLASHLIGHT_STATUS_CHANGED,
+            Events.ON_LOCAL_VIDEO_FORMAT_CHANGED,
+            Events.ON_HARDWARE_CODEC_SUPPORT,
+            Events.ON_EVENT_BATCH,
     })
     public @interface Events {
         String ON_CAMERA_SWITCHED = "onCameraSwitched";
@@ -189,10 +203,15 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
         String ON_DOMINANT_SPEAKER_CHANGED = "onDominantSpeakerDidChange";
         String ON_LOCAL_PARTICIPANT_SUPPORTED_CODECS = "onLocalParticipantSupportedCodecs";
         String ON_FLASHLIGHT_STATUS_CHANGED = "onFlashlightStatusChanged";
+        String ON_LOCAL_VIDEO_FORMAT_CHANGED = "onLocalVideoFormatChanged";
+        String ON_HARDWARE_CODEC_SUPPORT = "onHardwareCodecSupport";
+        // several of the events above, queued during one flush interval
+        String ON_EVENT_BATCH = "onEventBatch";
     }
 
     private final ThemedReactContext themedReactContext;
     private final RCTEventEmitter eventEmitter;
+    private final EventDispatcher eventDispatcher;
 
     private AudioFocusRequest audioFocusRequest;
     private AudioAttributes playbackAttributes;
@@ -213,6 +232,23 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
     private static PatchedVideoView thumbnailVideoView;
     private static LocalVideoTrack localVideoTrack;
 
+    /*
+     * Subscribed remote video tracks by trackSid, and the track each primary video view is
+     * attached to, so binding a view only touches its old and new track. Views scrolled off
+     * screen stay attached but have their sink removed until they are visible again.
+     */
+    private static final Map<String, RemoteVideoTrack> remoteVideoTracks = new HashMap<>();
+    private static final Map<PatchedVideoView, RemoteVideoTrack> attachedVideoTracks = new WeakHashMap<>();
+    private static final Set<PatchedVideoView> hiddenVideoViews = Collections.newSetFromMap(new WeakHashMap<>());
+    /*
+     * Primary video views waiting for their track to be subscribed, by trackSid, and the
+     * trackSid each waiting view is registered under.
+     */
+    private static final Map<String, Set<PatchedVideoView>> pendingVideoViews = new HashMap<>();
+    private static final Map<PatchedVideoView, String> pendingTrackSids = new WeakHashMap<>();
+    private static final AdaptiveSubscriptionController adaptiveSubscription =
+            new AdaptiveSubscriptionController(CustomTwilioVideoView::findRemoteVideoTrack);
+
     private static FrameCaptureCameraCapturer cameraCapturer;
     private LocalAudioTrack localAudioTrack;
     private AudioManager audioManager;
@@ -225,8 +261,17 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
     private final HandlerThread dataTrackMessageThread =
             new HandlerThread(DATA_TRACK_MESSAGE_THREAD_NAME);
     private Handler dataTrackMessageThreadHandler;
+    // only touched on dataTrackMessageThread
+    private final BinaryMessageEncoder binaryMessageEncoder = new BinaryMessageEncoder();
 
     private LocalDataTrack localDataTrack;
+    // packs sends on localDataTrack into batches while connected with data track batching enabled
+    private DataTrackBatcher dataTrackBatcher;
+    // data tracks requested by name on connect, released on disconnect
+    private NamedDataTracks namedDataTracks;
+
+    // Capture sinks attached to remote video tracks while a capture is pending, by trackSid
+    private final Map<String, FrameCapturerVideoSink> remoteCaptureSinks = new HashMap<>();
 
     private LifecycleOwner lifecycleOwner;
 
@@ -238,6 +283,7 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
         super(context);
         this.themedReactContext = context;
         this.eventEmitter = themedReactContext.getJSModule(RCTEventEmitter.class);
+        this.eventDispatcher = new EventDispatcher(eventEmitter, ON_EVENT_BATCH);
 
         /*
          * Needed for setting/abandoning audio focus during call
@@ -253,6 +299,14 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
         // Start the thread where data messages are received
         dataTrackMessageThread.start();
         dataTrackMessageThreadHandler = new Handler(dataTrackMessageThread.getLooper());
+
+        adaptiveCapture = new AdaptiveCaptureController(context, statsListener -> {
+            if (room == null) {
+                return false;
+            }
+            room.getStats(statsListener);
+            return true;
+        }, this::updateLocalVideoFormat);
     }
 
     @Override
@@ -275,7 +329,89 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
     // ===== SETUP =================================================================================
 
     private VideoFormat buildVideoFormat() {
-        return new VideoFormat(VideoDimensions.HD_720P_VIDEO_DIMENSIONS, 30);
+        String cameraId = cameraCapturer != null ? cameraCapturer.getCameraId() : null;
+        localVideoFormat = CaptureFormatSelector.select(
+                CameraInventory.getSupportedFormats(cameraId), adaptiveCapture.limit(requestedVideoFormat));
+        adaptiveCapture.onCaptureFormat(localVideoFormat);
+        Log.i(TAG, "Capturing " + formatToString(localVideoFormat) + " from camera " + cameraId
+                + ", requested " + formatToString(requestedVideoFormat)
+                + ", adaptive capture level " + adaptiveCapture.getLevel());
+
+        WritableMap event = new WritableNativeMap();
+        event.putString("cameraId", cameraId);
+        event.putInt("width", localVideoFormat.dimensions.width);
+        event.putInt("height", localVideoFormat.dimensions.height);
+        event.putInt("fps", localVideoFormat.framerate);
+        event.putInt("requestedWidth", requestedVideoFormat.dimensions.width);
+        event.putInt("requestedHeight", requestedVideoFormat.dimensions.height);
+        event.putInt("requestedFps", requestedVideoFormat.framerate);
+        event.putInt("adaptiveLevel", adaptiveCapture.getLevel());
+        pushEvent(CustomTwilioVideoView.this, ON_LOCAL_VIDEO_FORMAT_CHANGED, event);
+        return localVideoFormat;
+    }
+
+    private static String formatToString(VideoFormat format) {
+        return format.dimensions.width + "x" + format.dimensions.height + "@" + format.framerate;
+    }
+
+    /**
+     * Capture at the supported format closest to {@code videoFormat}. A local video track that already exists is
+     * rebuilt if that changes its format.
+     */
+    private void setVideoFormat(VideoFormat videoFormat) {
+        requestedVideoFormat = videoFormat;
+        updateLocalVideoFormat();
+    }
+
+    /**
+     * Rebuild the local video track if the requested format or the adaptive capture limit changed its format.
+     */
+    private void updateLocalVideoFormat() {
+        if (localVideoTrack == null || cameraCapturer == null || localVideoFormat == null) {
+            return;
+        }
+        VideoFormat selected = CaptureFormatSelector.select(
+                CameraInventory.getSupportedFormats(cameraCapturer.getCameraId()),
+                adaptiveCapture.limit(requestedVideoFormat));
+        if (selected.dimensions.width != localVideoFormat.dimensions.width
+                || selected.dimensions.height != localVideoFormat.dimensions.height
+                || selected.framerate != localVideoFormat.framerate) {
+            rebuildLocalVideoTrack();
+        }
+    }
+
+    /**
+     * Replace the local video track with one at the current video format, keeping its enabled and published state.
+     */
+    private void rebuildLocalVideoTrack() {
+        if (localVideoTrack == null || cameraCapturer == null) {
+            return;
+        }
+        boolean enabled = localVideoTrack.isEnabled();
+        boolean published = false;
+        if (localParticipant != null) {
+            for (LocalVideoTrackPublication publication : localParticipant.getLocalVideoTracks()) {
+                if (publication.getLocalVideoTrack() == localVideoTrack) {
+                    published = true;
+                }
+            }
+            if (published) {
+                localParticipant.unpublishTrack(localVideoTrack);
+            }
+        }
+        localVideoTrack.release();
+
+        Log.i(TAG, "Rebuilding LocalVideoTrack with name: " + videoTrackName);
+        localVideoTrack = LocalVideoTrack.create(getContext(), enabled, cameraCapturer, buildVideoFormat(), videoTrackName);
+        if (localVideoTrack == null) {
+            return;
+        }
+        if (thumbnailVideoView != null) {
+            setupLocalVideoTrack(thumbnailVideoView);
+        }
+        if (published) {
+            localParticipant.publishTrack(localVideoTrack);
+        }
     }
 
     private FrameCaptureCameraCapturer createCameraCapturer(Context context, String cameraId) {
@@ -313,15 +449,13 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
     }
 
     private void buildDeviceInfo() {
-        Camera1Enumerator enumerator = new Camera1Enumerator();
-        String[] deviceNames = enumerator.getDeviceNames();
         backFacingDevice = null;
         frontFacingDevice = null;
-        for (String deviceName : deviceNames) {
-            if (enumerator.isBackFacing(deviceName) && enumerator.getSupportedFormats(deviceName).size() > 0) {
-                backFacingDevice = deviceName;
-            } else if (enumerator.isFrontFacing(deviceName) && enumerator.getSupportedFormats(deviceName).size() > 0) {
-                frontFacingDevice = deviceName;
+        for (CameraInventory.Device device : CameraInventory.getDevices(getContext())) {
+            if (device.backFacing && device.formats.size() > 0) {
+                backFacingDevice = device.name;
+            } else if (device.frontFacing && device.formats.size() > 0) {
+                frontFacingDevice = device.name;
             }
         }
     }
@@ -361,6 +495,7 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
             pushEvent(CustomTwilioVideoView.this, ON_CONNECT_FAILURE, event);
             return false;
         }
+        CameraInventory.setCaptureActive(true);
 
         Log.i(TAG, "Creating LocalVideoTrack with name: " + videoTrackName);
         localVideoTrack = LocalVideoTrack.create(getContext(), enableVideo, cameraCapturer, buildVideoFormat(), videoTrackName);
@@ -483,10 +618,15 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
             Log.w(TAG, "Unable to unregister for Android lifecycle events");
         }
 
+        adaptiveCapture.stop();
         room = null;
         localVideoTrack = null;
         thumbnailVideoView = null;
         cameraCapturer = null;
+        CameraInventory.setCaptureActive(false);
+        CaptureWorkerPool.shutdown();
+        TextureFrameEncoder.release();
+        Utils.releaseCaptureBuffers();
     }
 
     // ====== CONNECTING ===========================================================================
@@ -501,7 +641,8 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
             boolean dominantSpeakerEnabled,
             boolean maintainVideoTrackInBackground,
             String cameraType,
-            boolean enableH264Codec
+            boolean enableH264Codec,
+            ConnectionOptions connectionOptions
     ) {
         this.roomName = roomName;
         this.accessToken = accessToken;
@@ -511,6 +652,14 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
         this.maintainVideoTrackInBackground = maintainVideoTrackInBackground;
         this.cameraType = cameraType;
         this.enableH264Codec = enableH264Codec;
+        this.connectionOptions = connectionOptions;
+        releaseNamedDataTracks();
+        if (!connectionOptions.dataTracks.isEmpty()) {
+            namedDataTracks = new NamedDataTracks(getContext(), connectionOptions.dataTracks);
+        }
+        if (connectionOptions.videoFormat != null) {
+            setVideoFormat(connectionOptions.videoFormat);
+        }
 
         // Share your microphone
         Log.i(TAG, "Creating LocalAudioTrack");
@@ -553,40 +702,41 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
 
         //LocalDataTrack localDataTrack = LocalDataTrack.create(getContext());
 
-        if (localDataTrack != null) {
-            connectOptionsBuilder.dataTracks(Collections.singletonList(localDataTrack));
+        DataTrackBatcher.Config dataTrackBatchingConfig = connectionOptions.dataTrackBatching;
+        List<LocalDataTrack> dataTracks = new ArrayList<>();
+        if (namedDataTracks != null) {
+            dataTracks.addAll(namedDataTracks.getTracks());
+            namedDataTracks.setBatching(dataTrackMessageThreadHandler, dataTrackBatchingConfig);
         }
-
-        // H264 Codec Support Detection: https://www.twilio.com/docs/video/managing-codecs
-        HardwareVideoEncoderFactory hardwareVideoEncoderFactory = new HardwareVideoEncoderFactory(null, true, true);
-        HardwareVideoDecoderFactory hardwareVideoDecoderFactory = new HardwareVideoDecoderFactory(null);
-
-        boolean h264EncoderSupported = false;
-        for (VideoCodecInfo videoCodecInfo : hardwareVideoEncoderFactory.getSupportedCodecs()) {
-            if (videoCodecInfo.name.equalsIgnoreCase("h264")) {
-                h264EncoderSupported = true;
-                break;
+        if (localDataTrack != null) {
+            dataTracks.add(0, localDataTrack);
+            if (dataTrackBatcher != null) {
+                dataTrackBatcher.release();
             }
+            dataTrackBatcher = dataTrackBatchingConfig.enabled
+                    ? new DataTrackBatcher(localDataTrack, dataTrackMessageThreadHandler, dataTrackBatchingConfig)
+                    : null;
         }
-        boolean h264DecoderSupported = false;
-        for (VideoCodecInfo videoCodecInfo : hardwareVideoDecoderFactory.getSupportedCodecs()) {
-            if (videoCodecInfo.name.equalsIgnoreCase("h264")) {
-                h264DecoderSupported = true;
-                break;
-            }
+        if (!dataTracks.isEmpty()) {
+            connectOptionsBuilder.dataTracks(dataTracks);
         }
 
-        boolean isH264Supported = h264EncoderSupported && h264DecoderSupported;
+        // probed once per process, usually already warmed up by TwilioPackage
+        boolean isH264Supported = HardwareCodecSupport.get().isH264Supported();
 
         Log.i(TAG, "H264 supported by hardware: " + isH264Supported);
 
         WritableArray supportedCodecs = new WritableNativeArray();
 
-        VideoCodec videoCodec =  new Vp8Codec();
+        // simulcast sends several VP8 layers so the SFU can forward a lower one to constrained subscribers
+        VideoCodec videoCodec =  new Vp8Codec(connectionOptions.enableVp8Simulcast);
         // VP8 is supported on all android devices by default
         supportedCodecs.pushString(videoCodec.toString());
 
         if (isH264Supported && this.enableH264Codec) {
+            if (connectionOptions.enableVp8Simulcast) {
+                Log.w(TAG, "VP8 simulcast is not used, H264 is preferred");
+            }
             videoCodec = new H264Codec();
             supportedCodecs.pushString(videoCodec.toString());
         }
@@ -599,6 +749,10 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
 
         connectOptionsBuilder.preferVideoCodecs(Collections.singletonList(videoCodec));
 
+        if (connectionOptions.encodingParameters != null) {
+            connectOptionsBuilder.encodingParameters(connectionOptions.encodingParameters);
+        }
+
         connectOptionsBuilder.enableDominantSpeaker(this.dominantSpeakerEnabled);
 
         if (enableNetworkQualityReporting) {
@@ -608,6 +762,14 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
                     NetworkQualityVerbosity.NETWORK_QUALITY_VERBOSITY_MINIMAL));
         }
 
+        adaptiveSubscription.setConfig(connectionOptions.adaptiveSubscription);
+        adaptiveCapture.start(connectionOptions.adaptiveCapture);
+        BandwidthProfileOptions bandwidthProfile =
+                connectionOptions.bandwidthProfile.toOptions(connectionOptions.adaptiveSubscription);
+        if (bandwidthProfile != null) {
+            connectOptionsBuilder.bandwidthProfile(bandwidthProfile);
+        }
+
         room = Video.connect(getContext(), connectOptionsBuilder.build(), roomListener());
     }
 
@@ -722,16 +884,58 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
         if (cameraCapturer != null) {
             cameraCapturer.stopCapture();
             cameraCapturer = null;
+            CameraInventory.setCaptureActive(false);
         }
     }
 
     // ===== SEND STRING ON DATA TRACK ======================================================================
-    public void sendString(String message) {
-        if (localDataTrack != null) {
+
+    /**
+     * Send on the data track named {@code trackName}, or on the default data track if it is null.
+     */
+    public void sendString(String message, @Nullable String trackName) {
+        if (trackName != null) {
+            if (namedDataTracks != null) {
+                namedDataTracks.send(trackName, message);
+            }
+        } else if (dataTrackBatcher != null) {
+            dataTrackBatcher.send(message);
+        } else if (localDataTrack != null) {
             localDataTrack.send(message);
         }
     }
 
+    /**
+     * Send a binary message. The bridge only carries strings, so JS sends the bytes Base64 encoded and they are
+     * decoded straight into the buffer handed to the data track.
+     */
+    public void sendBinary(String base64Message, @Nullable String trackName) {
+        if (trackName != null ? namedDataTracks == null : localDataTrack == null) {
+            return;
+        }
+        byte[] message;
+        try {
+            message = Base64.decode(base64Message, Base64.NO_WRAP);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "sendBinary: message is not valid Base64", e);
+            return;
+        }
+        if (trackName != null) {
+            namedDataTracks.send(trackName, message);
+        } else if (dataTrackBatcher != null) {
+            dataTrackBatcher.send(message);
+        } else {
+            localDataTrack.send(ByteBuffer.wrap(message));
+        }
+    }
+
+    private void releaseNamedDataTracks() {
+        if (namedDataTracks != null) {
+            namedDataTracks.release();
+            namedDataTracks = null;
+        }
+    }
+
     private static boolean isCurrentCameraSourceBackFacing() {
         return cameraCapturer != null && cameraCapturer.getCameraId() == backFacingDevice;
     }
@@ -748,6 +952,8 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
 
     public void switchCamera() {
         if (cameraCapturer != null) {
+            // cheap with the cached inventory, and picks up cameras added since the track was created
+            buildDeviceInfo();
             final boolean isBackCamera = isCurrentCameraSourceBackFacing();
             if (frontFacingDevice != null && (isBackCamera || backFacingDevice == null)) {
                 cameraCapturer.switchCamera(frontFacingDevice);
@@ -839,8 +1045,15 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
     }
 
     public void toggleVideo(boolean enabled, String cameraType) {
+        toggleVideo(enabled, cameraType, null);
+    }
+
+    public void toggleVideo(boolean enabled, String cameraType, @Nullable VideoFormat videoFormat) {
         this.cameraType = cameraType;
         Log.i(TAG, "ToggleVideo, enabled: " + enabled + ", cameraType: " + cameraType);
+        if (videoFormat != null) {
+            setVideoFormat(videoFormat);
+        }
 
         if (cameraCapturer == null && enabled) {
             String fallbackCameraType = cameraType == null ? CustomTwilioVideoView.FRONT_CAMERA_TYPE : cameraType;
@@ -936,11 +1149,127 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
         if (cameraCapturer != null) {
             cameraCapturer.stopCapture();
             cameraCapturer = null;
+            CameraInventory.setCaptureActive(false);
         }
     }
 
     public void captureFrame(String filename) {
-        cameraCapturer.captureFrame(filename);
+        captureFrame(filename, FrameCaptureOptions.DEFAULT);
+    }
+
+    public void captureFrame(String filename, FrameCaptureOptions options) {
+        if (cameraCapturer == null) {
+            Log.w(TAG, "No camera to capture " + filename + " from");
+            Utils.sendFrameCaptureFailed(themedReactContext, FrameCaptureRequest.toFile(filename, options),
+                    NO_CAMERA_TO_CAPTURE);
+            return;
+        }
+        cameraCapturer.captureFrame(filename, options);
+    }
+
+    public void captureFrameToMemory(String captureId, FrameCaptureOptions options) {
+        if (cameraCapturer == null) {
+            Log.w(TAG, "No camera to capture " + captureId + " from");
+            Utils.sendFrameCaptureFailed(themedReactContext, FrameCaptureRequest.toMemory(captureId, options),
+                    NO_CAMERA_TO_CAPTURE);
+            return;
+        }
+        cameraCapturer.captureFrameToMemory(captureId, options);
+    }
+
+    public void startFrameCaptureBurst(
+            String burstId,
+            int count,
+            int intervalMs,
+            int everyNthFrame,
+            boolean toMemory,
+            FrameCaptureOptions options,
+            boolean dropNewest
+    ) {
+        if (cameraCapturer == null) {
+            Log.w(TAG, "No camera to capture burst " + burstId + " from");
+            return;
+        }
+        cameraCapturer.startBurst(new FrameCaptureBurst(
+                burstId,
+                count,
+                intervalMs,
+                everyNthFrame,
+                toMemory,
+                options,
+                dropNewest ? CapturedFrameQueue.DropPolicy.DROP_NEWEST : CapturedFrameQueue.DropPolicy.DROP_OLDEST
+        ));
+    }
+
+    public void stopFrameCaptureBurst() {
+        if (cameraCapturer != null) {
+            cameraCapturer.stopBurst();
+        }
+    }
+
+    /**
+     * Capture the next frame of a subscribed remote video track. The capture sink is only attached to the track
+     * until the frame has been taken.
+     */
+    public void captureRemoteFrame(String trackSid, String name, boolean toMemory, FrameCaptureOptions options) {
+        RemoteVideoTrack track = findRemoteVideoTrack(trackSid);
+        if (track == null) {
+            Log.w(TAG, "No subscribed video track " + trackSid + " to capture " + name + " from");
+            Utils.sendFrameCaptureFailed(themedReactContext,
+                    toMemory ? FrameCaptureRequest.toMemory(name, options) : FrameCaptureRequest.toFile(name, options),
+                    "No subscribed video track " + trackSid);
+            return;
+        }
+
+        FrameCapturerVideoSink sink = remoteCaptureSinks.get(trackSid);
+        boolean attach = sink == null;
+        if (attach) {
+            final FrameCapturerVideoSink newSink = new FrameCapturerVideoSink();
+            newSink.setContext(themedReactContext);
+            // the sink can't be removed from the frame thread, detach it on the main thread instead
+            newSink.setOnIdleListener(() -> handler.post(() -> detachRemoteCaptureSink(trackSid, track, newSink)));
+            remoteCaptureSinks.put(trackSid, newSink);
+            sink = newSink;
+        }
+        if (toMemory) {
+            sink.captureFrameToMemory(name, options);
+        } else {
+            sink.captureFrame(name, options);
+        }
+        if (attach) {
+            track.addSink(sink);
+        }
+    }
+
+    private void detachRemoteCaptureSink(String trackSid, RemoteVideoTrack track, FrameCapturerVideoSink sink) {
+        // a capture may have been requested since the sink went idle
+        if (remoteCaptureSinks.get(trackSid) != sink || !sink.isIdle()) {
+            return;
+        }
+        remoteCaptureSinks.remove(trackSid);
+        track.removeSink(sink);
+    }
+
+    private void cancelRemoteCapture(String trackSid, RemoteVideoTrack track) {
+        FrameCapturerVideoSink sink = remoteCaptureSinks.remove(trackSid);
+        if (sink != null) {
+            track.removeSink(sink);
+            sink.cancel();
+        }
+    }
+
+    private void cancelRemoteCaptures() {
+        // the tracks are released with the room
+        for (FrameCapturerVideoSink sink : remoteCaptureSinks.values()) {
+            sink.cancel();
+        }
+        remoteCaptureSinks.clear();
+    }
+
+    public void releaseCapturedFrame(String captureId) {
+        if (!CapturedFrameCache.remove(captureId)) {
+            Log.w(TAG, "No captured frame to release for " + captureId);
+        }
     }
 
     private void convertBaseTrackStats(BaseTrackStats bs, WritableMap result) {
@@ -1004,6 +1333,10 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
         return result;
     }
 
+    public void getHardwareCodecSupport() {
+        pushEvent(CustomTwilioVideoView.this, ON_HARDWARE_CODEC_SUPPORT, HardwareCodecSupport.get().toWritableMap());
+    }
+
     public void getStats() {
         if (room != null) {
             room.getStats(new StatsListener() {
@@ -1037,7 +1370,7 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
                         connectionStats.putArray("localVideoTrackStats", lvs);
                         event.putMap(sr.getPeerConnectionId(), connectionStats);
                     }
-                    pushEvent(CustomTwilioVideoView.this, ON_STATS_RECEIVED, event);
+                    pushEvent(CustomTwilioVideoView.this, ON_STATS_RECEIVED, event, "");
                 }
             });
         }
@@ -1137,6 +1470,14 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
 
 
                 CustomTwilioVideoView.room = null;
+                adaptiveCapture.stop();
+                if (dataTrackBatcher != null) {
+                    dataTrackBatcher.release();
+                    dataTrackBatcher = null;
+                }
+                releaseNamedDataTracks();
+                cancelRemoteCaptures();
+                clearRemoteVideoTracks();
                 // Only reinitialize the UI if disconnect was not called from onDestroy()
                 if (!disconnectedFromOnDestroy) {
                     setAudioFocus(false);
@@ -1175,7 +1516,7 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
                     event.putMap("participant", buildParticipant(remoteParticipant));
                 }
 
-                pushEvent(CustomTwilioVideoView.this, ON_DOMINANT_SPEAKER_CHANGED, event);
+                pushEvent(CustomTwilioVideoView.this, ON_DOMINANT_SPEAKER_CHANGED, event, "");
             }
         };
     }
@@ -1197,6 +1538,14 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
          */
         remoteParticipant.setListener(mediaListener());
 
+        for (RemoteVideoTrackPublication publication : remoteParticipant.getRemoteVideoTracks()) {
+            // subscribed before the listener was set
+            RemoteVideoTrack track = publication.getRemoteVideoTrack();
+            if (track != null) {
+                addRemoteVideoTrack(publication.getTrackSid(), track);
+            }
+        }
+
         for (final RemoteDataTrackPublication remoteDataTrackPublication :
                 remoteParticipant.getRemoteDataTracks()) {
             /*
@@ -1289,11 +1638,14 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
 
             @Override
             public void onVideoTrackSubscribed(RemoteParticipant participant, RemoteVideoTrackPublication publication, RemoteVideoTrack videoTrack) {
+                addRemoteVideoTrack(publication.getTrackSid(), videoTrack);
                 addParticipantVideo(participant, publication);
             }
 
             @Override
             public void onVideoTrackUnsubscribed(RemoteParticipant participant, RemoteVideoTrackPublication publication, RemoteVideoTrack videoTrack) {
+                cancelRemoteCapture(publication.getTrackSid(), videoTrack);
+                removeRemoteVideoTrack(publication.getTrackSid(), videoTrack);
                 removeParticipantVideo(participant, publication);
             }
 
@@ -1345,7 +1697,8 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
                 // Twilio SDK defines Enum 0 as UNKNOWN and 1 as Quality ZERO, so we subtract one to get the correct quality level as an integer
                 event.putInt("quality", networkQualityLevel.ordinal() - 1);
 
-                pushEvent(CustomTwilioVideoView.this, ON_NETWORK_QUALITY_LEVELS_CHANGED, event);
+                pushEvent(CustomTwilioVideoView.this, ON_NETWORK_QUALITY_LEVELS_CHANGED, event,
+                        remoteParticipant.getSid());
             }
         };
     }
@@ -1393,7 +1746,8 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
                 // Twilio SDK defines Enum 0 as UNKNOWN and 1 as Quality ZERO, so we subtract one to get the correct quality level as an integer
                 event.putInt("quality", networkQualityLevel.ordinal() - 1);
 
-                pushEvent(CustomTwilioVideoView.this, ON_NETWORK_QUALITY_LEVELS_CHANGED, event);
+                pushEvent(CustomTwilioVideoView.this, ON_NETWORK_QUALITY_LEVELS_CHANGED, event,
+                        localParticipant.getSid());
             }
         };
     }
@@ -1437,6 +1791,7 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
         WritableMap event = new WritableNativeMap();
         event.putString("message", message);
         event.putString("trackSid", remoteDataTrack.getSid());
+        event.putString("trackName", remoteDataTrack.getName());
         return event;
     }
 
@@ -1452,28 +1807,144 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
     // ===== EVENTS TO RN ==========================================================================
 
     void pushEvent(View view, String name, WritableMap data) {
-        eventEmitter.receiveEvent(view.getId(), name, data);
+        eventDispatcher.push(view.getId(), name, data);
+    }
+
+    /**
+     * Push an event that supersedes a queued one with the same name and {@code coalescingKey}.
+     */
+    void pushEvent(View view, String name, WritableMap data, String coalescingKey) {
+        eventDispatcher.push(view.getId(), name, data, coalescingKey);
+    }
+
+    public void setEventFlushInterval(long flushIntervalMs) {
+        eventDispatcher.setFlushInterval(flushIntervalMs);
+    }
+
+    public void setMaxCaptureThreads(int maxThreads) {
+        CaptureWorkerPool.setMaxThreads(maxThreads);
     }
 
     public static void registerPrimaryVideoView(PatchedVideoView v, String trackSid) {
-        if (room != null) {
+        adaptiveSubscription.setTrackSid(v, trackSid);
+        RemoteVideoTrack track = findRemoteVideoTrack(trackSid);
+        RemoteVideoTrack attachedTrack = attachedVideoTracks.get(v);
+        if (track != null && track == attachedTrack) {
+            return;
+        }
+        // the view may be waiting for a different trackSid, or for this one again
+        removePendingVideoView(v);
+        if (attachedTrack != null) {
+            attachedTrack.removeSink(v);
+            attachedVideoTracks.remove(v);
+        }
+        if (track != null) {
+            addVisibleSink(track, v);
+            attachedVideoTracks.put(v, track);
+        } else if (trackSid != null && !trackSid.isEmpty()) {
+            // attached as soon as the track is subscribed
+            addPendingVideoView(v, trackSid);
+        }
+    }
 
-            for (RemoteParticipant participant : room.getRemoteParticipants()) {
-                for (RemoteVideoTrackPublication publication : participant.getRemoteVideoTracks()) {
-                    RemoteVideoTrack track = publication.getRemoteVideoTrack();
-                    if (track == null) {
-                        continue;
-                    }
-                    if (publication.getTrackSid().equals(trackSid)) {
-                        track.addSink(v);
-                    } else {
-                        track.removeSink(v);
-                    }
-                }
+    /**
+     * Called by remote views as they scroll in and out of the viewport, or are attached to and
+     * detached from the window. Hidden views keep their track but stop receiving frames.
+     */
+    static void setPrimaryVideoViewVisible(PatchedVideoView v, boolean visible) {
+        adaptiveSubscription.setVisible(v, visible);
+        boolean changed = visible ? hiddenVideoViews.remove(v) : hiddenVideoViews.add(v);
+        RemoteVideoTrack track = attachedVideoTracks.get(v);
+        if (!changed || track == null) {
+            return;
+        }
+        if (visible) {
+            track.addSink(v);
+        } else {
+            track.removeSink(v);
+        }
+    }
+
+    /**
+     * Called by remote views after layout with the size the video is drawn at.
+     */
+    static void setPrimaryVideoViewSize(PatchedVideoView v, int width, int height) {
+        adaptiveSubscription.setSize(v, width, height);
+    }
+
+    private static void addVisibleSink(RemoteVideoTrack track, PatchedVideoView v) {
+        if (!hiddenVideoViews.contains(v)) {
+            track.addSink(v);
+        }
+    }
+
+    private static void addPendingVideoView(PatchedVideoView v, String trackSid) {
+        Set<PatchedVideoView> views = pendingVideoViews.get(trackSid);
+        if (views == null) {
+            views = Collections.newSetFromMap(new WeakHashMap<>());
+            pendingVideoViews.put(trackSid, views);
+        }
+        views.add(v);
+        pendingTrackSids.put(v, trackSid);
+    }
+
+    private static void removePendingVideoView(PatchedVideoView v) {
+        String trackSid = pendingTrackSids.remove(v);
+        if (trackSid == null) {
+            return;
+        }
+        Set<PatchedVideoView> views = pendingVideoViews.get(trackSid);
+        if (views != null) {
+            views.remove(v);
+            if (views.isEmpty()) {
+                pendingVideoViews.remove(trackSid);
             }
         }
     }
 
+    @Nullable
+    private static RemoteVideoTrack findRemoteVideoTrack(@Nullable String trackSid) {
+        return trackSid == null ? null : remoteVideoTracks.get(trackSid);
+    }
+
+    private static void addRemoteVideoTrack(String trackSid, RemoteVideoTrack track) {
+        remoteVideoTracks.put(trackSid, track);
+        adaptiveSubscription.onTrackSubscribed(trackSid);
+        Set<PatchedVideoView> views = pendingVideoViews.remove(trackSid);
+        if (views == null) {
+            return;
+        }
+        for (PatchedVideoView v : views) {
+            pendingTrackSids.remove(v);
+            addVisibleSink(track, v);
+            attachedVideoTracks.put(v, track);
+        }
+    }
+
+    private static void removeRemoteVideoTrack(String trackSid, RemoteVideoTrack track) {
+        remoteVideoTracks.remove(trackSid);
+        adaptiveSubscription.onTrackUnsubscribed(trackSid);
+        Iterator<Map.Entry<PatchedVideoView, RemoteVideoTrack>> attached = attachedVideoTracks.entrySet().iterator();
+        while (attached.hasNext()) {
+            Map.Entry<PatchedVideoView, RemoteVideoTrack> entry = attached.next();
+            if (entry.getValue() == track) {
+                PatchedVideoView v = entry.getKey();
+                track.removeSink(v);
+                attached.remove();
+                // reattach if the track is subscribed again
+                addPendingVideoView(v, trackSid);
+            }
+        }
+    }
+
+    private static void clearRemoteVideoTracks() {
+        remoteVideoTracks.clear();
+        attachedVideoTracks.clear();
+        pendingVideoViews.clear();
+        pendingTrackSids.clear();
+        adaptiveSubscription.reset();
+    }
+
     public static void registerThumbnailVideoView(PatchedVideoView v) {
         thumbnailVideoView = v;
         setupLocalVideoTrack(v);
@@ -1493,16 +1964,26 @@ public class CustomTwilioVideoView extends View implements DefaultLifecycleObser
 
             @Override
             public void onMessage(RemoteDataTrack remoteDataTrack, ByteBuffer byteBuffer) {
-                byte[] binaryMessage;
+                if (connectionOptions.dataTrackBatching.enabled && DataTrackFraming.isFramed(byteBuffer)) {
+                    // a batch from a sender with data track batching enabled
+                    DataTrackFraming.unpack(byteBuffer, new DataTrackFraming.Receiver() {
+                        @Override
+                        public void onString(String message) {
+                            onMessage(remoteDataTrack, message);
+                        }
 
-                if (byteBuffer.hasArray()) {
-                    binaryMessage = byteBuffer.array();
-                } else {
-                    binaryMessage = new byte[byteBuffer.remaining()];
-                    byteBuffer.get(binaryMessage);
+                        @Override
+                        public void onBinary(ByteBuffer message) {
+                            pushBinaryMessage(remoteDataTrack, message);
+                        }
+                    });
+                    return;
                 }
+                pushBinaryMessage(remoteDataTrack, byteBuffer);
+            }
 
-                String encodedBinaryMessage = Base64.encodeToString(binaryMessage, Base64.NO_WRAP);
+            private void pushBinaryMessage(RemoteDataTrack remoteDataTrack, ByteBuffer byteBuffer) {
+                String encodedBinaryMessage = binaryMessageEncoder.encode(byteBuffer);
                 WritableMap event = buildDataTrackEvent(remoteDataTrack, encodedBinaryMessage);
                 pushEvent(CustomTwilioVideoView.this, ON_DATATRACK_BINARY_MESSAGE_RECEIVED, event);
             }
@@ -44,6 +44,9 @@ import static com.twiliorn.library.CustomTwilioVideoView.Events.ON_NETWORK_QUALI
 import static com.twiliorn.library.CustomTwilioVideoView.Events.ON_DOMINANT_SPEAKER_CHANGED;
 import static com.twiliorn.library.CustomTwilioVideoView.Events.ON_LOCAL_PARTICIPANT_SUPPORTED_CODECS;
 import static com.twiliorn.library.CustomTwilioVideoView.Events.ON_FLASHLIGHT_STATUS_CHANGED;
+import static com.twiliorn.library.CustomTwilioVideoView.Events.ON_LOCAL_VIDEO_FORMAT_CHANGED;
+import static com.twiliorn.library.CustomTwilioVideoView.Events.ON_HARDWARE_CODEC_SUPPORT;
+import static com.twiliorn.library.CustomTwilioVideoView.Events.ON_EVENT_BATCH;
 
 import android.util.Log;
 
@@ -67,6 +70,13 @@ public class CustomTwilioVideoViewManager extends SimpleViewManager<CustomTwilio
     private static final int PREPARE_TO_REBUILD_LOCAL_VIDEO_TRACK = 15;
     private static final int CAPTURE_FRAME = 16;
     private static final int SET_FLASHLIGHT_STATUS = 17;
+    private static final int CAPTURE_FRAME_TO_MEMORY = 18;
+    private static final int RELEASE_CAPTURED_FRAME = 19;
+    private static final int START_FRAME_CAPTURE_BURST = 20;
+    private static final int STOP_FRAME_CAPTURE_BURST = 21;
+    private static final int CAPTURE_REMOTE_FRAME = 22;
+    private static final int GET_HARDWARE_CODEC_SUPPORT = 23;
+    private static final int SEND_BINARY = 24;
 
 
     @Override
@@ -84,6 +94,23 @@ public class CustomTwilioVideoViewManager extends SimpleViewManager<CustomTwilio
         view.setLocalVideoTrackName(name);
     }
 
+    /**
+     * How often queued events are sent to JS: 0 (the default) once per frame, a negative value sends each event
+     * right away.
+     */
+    @ReactProp(name = "eventFlushIntervalMs", defaultInt = 0)
+    public void setEventFlushInterval(CustomTwilioVideoView view, int flushIntervalMs) {
+        view.setEventFlushInterval(flushIntervalMs);
+    }
+
+    /**
+     * The most threads frame captures are encoded on, 4 by default. The worker pool is shared by every view.
+     */
+    @ReactProp(name = "maxCaptureThreads", defaultInt = CaptureWorkerPool.DEFAULT_MAX_THREADS)
+    public void setMaxCaptureThreads(CustomTwilioVideoView view, int maxThreads) {
+        view.setMaxCaptureThreads(maxThreads);
+    }
+
     @Override
     public void receiveCommand(CustomTwilioVideoView view, int commandId, @Nullable ReadableArray args) {
         String cameraType = null;
@@ -111,7 +138,8 @@ public class CustomTwilioVideoViewManager extends SimpleViewManager<CustomTwilio
                     dominantSpeakerEnabled,
                     maintainVideoTrackInBackground,
                     cameraType,
-                    enableH264Codec
+                    enableH264Codec,
+                    ConnectionOptions.fromArgs(args)
                   );
                 break;
             case DISCONNECT:
@@ -123,7 +151,9 @@ public class CustomTwilioVideoViewManager extends SimpleViewManager<CustomTwilio
             case TOGGLE_VIDEO:
                 Boolean videoEnabled = args.getBoolean(0);
                 cameraType = args.getString(1);
-                view.toggleVideo(videoEnabled, cameraType);
+                ReadableMap toggleVideoFormat = args.size() > 2 && !args.isNull(2) ? args.getMap(2) : null;
+                view.toggleVideo(videoEnabled, cameraType, toggleVideoFormat != null
+                        ? CaptureFormatSelector.fromMap(toggleVideoFormat, CaptureFormatSelector.DEFAULT_FORMAT) : null);
                 break;
             case TOGGLE_SOUND:
                 Boolean audioEnabled = args.getBoolean(0);
@@ -151,7 +181,7 @@ public class CustomTwilioVideoViewManager extends SimpleViewManager<CustomTwilio
                 view.toggleBluetoothHeadset(headsetEnabled);
                 break;
             case SEND_STRING:
-                view.sendString(args.getString(0));
+                view.sendString(args.getString(0), trackName(args, 1));
                 break;
             case PUBLISH_VIDEO:
                 view.publishLocalVideo(args.getBoolean(0));
@@ -164,12 +194,56 @@ public class CustomTwilioVideoViewManager extends SimpleViewManager<CustomTwilio
                 break;
             case CAPTURE_FRAME:
                 Log.d(TwilioPackage.TAG, String.format("capture frame: %s", args.getString(0) == null ? "null" : args.getString(0)));
-                view.captureFrame(args.getString(0));
+                view.captureFrame(args.getString(0), captureOptions(args, 1));
                 break;
             case SET_FLASHLIGHT_STATUS:
                 view.setFlashlightStatus(args.getBoolean(0));
                 break;
+            case CAPTURE_FRAME_TO_MEMORY:
+                view.captureFrameToMemory(args.getString(0), captureOptions(args, 1));
+                break;
+            case RELEASE_CAPTURED_FRAME:
+                view.releaseCapturedFrame(args.getString(0));
+                break;
+            case START_FRAME_CAPTURE_BURST:
+                String burstId = args.getString(0);
+                ReadableMap burstOptions = args.getMap(1);
+                int count = burstOptions.hasKey("count") ? burstOptions.getInt("count") : 0;
+                int intervalMs = burstOptions.hasKey("intervalMs") ? burstOptions.getInt("intervalMs") : 0;
+                int everyNthFrame = burstOptions.hasKey("everyNthFrame") ? burstOptions.getInt("everyNthFrame") : 1;
+                boolean toMemory = burstOptions.hasKey("toMemory") ? burstOptions.getBoolean("toMemory") : false;
+                boolean dropNewest = burstOptions.hasKey("dropPolicy") && "dropNewest".equals(burstOptions.getString("dropPolicy"));
+                view.startFrameCaptureBurst(burstId, count, intervalMs, everyNthFrame, toMemory,
+                        FrameCaptureOptions.fromMap(burstOptions), dropNewest);
+                break;
+            case STOP_FRAME_CAPTURE_BURST:
+                view.stopFrameCaptureBurst();
+                break;
+            case CAPTURE_REMOTE_FRAME:
+                view.captureRemoteFrame(args.getString(0), args.getString(1), args.getBoolean(2),
+                        captureOptions(args, 3));
+                break;
+            case GET_HARDWARE_CODEC_SUPPORT:
+                view.getHardwareCodecSupport();
+                break;
+            case SEND_BINARY:
+                view.sendBinary(args.getString(0), trackName(args, 1));
+                break;
+        }
+    }
+
+    // the data track name is optional, null sends on the default track
+    @Nullable
+    private static String trackName(ReadableArray args, int index) {
+        return args.size() > index && !args.isNull(index) ? args.getString(index) : null;
+    }
+
+    // capture options are an optional trailing map argument
+    private static FrameCaptureOptions captureOptions(ReadableArray args, int index) {
+        if (args.size() <= index || args.isNull(index)) {
+            return FrameCaptureOptions.DEFAULT;
         }
+        return FrameCaptureOptions.fromMap(args.getMap(index));
     }
 
     @Override
@@ -205,7 +279,10 @@ public class CustomTwilioVideoViewManager extends SimpleViewManager<CustomTwilio
         ));
 
         map.putAll(MapBuilder.of(
-                ON_FLASHLIGHT_STATUS_CHANGED, MapBuilder.of("registrationName", ON_FLASHLIGHT_STATUS_CHANGED)
+                ON_FLASHLIGHT_STATUS_CHANGED, MapBuilder.of("registrationName", ON_FLASHLIGHT_STATUS_CHANGED),
+                ON_LOCAL_VIDEO_FORMAT_CHANGED, MapBuilder.of("registrationName", ON_LOCAL_VIDEO_FORMAT_CHANGED),
+                ON_HARDWARE_CODEC_SUPPORT, MapBuilder.of("registrationName", ON_HARDWARE_CODEC_SUPPORT),
+                ON_EVENT_BATCH, MapBuilder.of("registrationName", ON_EVENT_BATCH)
         ));
 
         map.putAll(MapBuilder.of(
@@ -240,6 +317,13 @@ public class CustomTwilioVideoViewManager extends SimpleViewManager<CustomTwilio
                 .put("prepareToRebuildLocalVideoTrack", PREPARE_TO_REBUILD_LOCAL_VIDEO_TRACK)
                 .put("captureFrame", CAPTURE_FRAME)
                 .put("setFlashlightStatus", SET_FLASHLIGHT_STATUS)
+                .put("captureFrameToMemory", CAPTURE_FRAME_TO_MEMORY)
+                .put("releaseCapturedFrame", RELEASE_CAPTURED_FRAME)
+                .put("startFrameCaptureBurst", START_FRAME_CAPTURE_BURST)
+                .put("stopFrameCaptureBurst", STOP_FRAME_CAPTURE_BURST)
+                .put("captureRemoteFrame", CAPTURE_REMOTE_FRAME)
+                .put("getHardwareCodecSupport", GET_HARDWARE_CODEC_SUPPORT)
+                .put("sendBinary", SEND_BINARY)
                 .build();
     }
 }
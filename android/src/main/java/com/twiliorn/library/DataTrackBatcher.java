@@ -0,0 +1,207 @@
+package com.twiliorn.library;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.twilio.video.LocalDataTrack;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Packs the messages sent on a local data track into {@link DataTrackFraming} batches of up to
+ * {@code maxMessageSize} bytes, sent every {@code flushIntervalMs}, so a stream of small messages costs one data
+ * track message per interval instead of one each. With {@code maxMessagesPerSecond} set, batches beyond that rate
+ * wait for their turn while new messages keep filling the next batch; messages beyond {@code maxQueuedBytes} are
+ * dropped.
+ * <p>
+ * Frames are packed into one reused buffer that grows to the largest batch seen; a batch is copied out at its exact
+ * size when it is sealed, so a few small messages per interval only allocate those few bytes.
+ * <p>
+ * Messages can be queued from any thread, batches are sent on the given handler's thread.
+ */
+final class DataTrackBatcher {
+    static final class Config {
+        static final Config DISABLED = new Config(false, 16 * 1024, 20, 0, 1024 * 1024);
+
+        final boolean enabled;
+        final int maxMessageSize;
+        final long flushIntervalMs;
+        // 0 for no limit
+        final int maxMessagesPerSecond;
+        final int maxQueuedBytes;
+
+        Config(boolean enabled, int maxMessageSize, long flushIntervalMs, int maxMessagesPerSecond, int maxQueuedBytes) {
+            this.enabled = enabled;
+            this.maxMessageSize = Math.max(DataTrackFraming.HEADER_SIZE + DataTrackFraming.FRAME_HEADER_SIZE + 1,
+                    maxMessageSize);
+            this.flushIntervalMs = Math.max(0, flushIntervalMs);
+            this.maxMessagesPerSecond = Math.max(0, maxMessagesPerSecond);
+            this.maxQueuedBytes = Math.max(this.maxMessageSize, maxQueuedBytes);
+        }
+
+        /**
+         * Parse {@code {enabled, maxMessageSize, flushIntervalMs, maxMessagesPerSecond, maxQueuedBytes}} from JS.
+         */
+        static Config fromMap(@Nullable ReadableMap map) {
+            if (map == null) {
+                return DISABLED;
+            }
+            return new Config(
+                    !map.hasKey("enabled") || map.getBoolean("enabled"),
+                    map.hasKey("maxMessageSize") ? map.getInt("maxMessageSize") : DISABLED.maxMessageSize,
+                    map.hasKey("flushIntervalMs") ? map.getInt("flushIntervalMs") : DISABLED.flushIntervalMs,
+                    map.hasKey("maxMessagesPerSecond")
+                            ? map.getInt("maxMessagesPerSecond") : DISABLED.maxMessagesPerSecond,
+                    map.hasKey("maxQueuedBytes") ? map.getInt("maxQueuedBytes") : DISABLED.maxQueuedBytes
+            );
+        }
+    }
+
+    private final LocalDataTrack track;
+    private final Handler handler;
+    private final Config config;
+    private final Runnable flushRunnable = this::flush;
+
+    // guarded by this, the batch being filled, empty when pendingSize is 0
+    private byte[] pending = new byte[0];
+    private int pendingSize;
+    private final ArrayDeque<ByteBuffer> ready = new ArrayDeque<>();
+    private int queuedBytes;
+    private boolean flushScheduled;
+    private double tokens;
+    private long lastRefillMs;
+
+    DataTrackBatcher(LocalDataTrack track, Handler handler, Config config) {
+        this.track = track;
+        this.handler = handler;
+        this.config = config;
+        this.tokens = config.maxMessagesPerSecond;
+        this.lastRefillMs = SystemClock.elapsedRealtime();
+    }
+
+    boolean send(String message) {
+        return enqueue(DataTrackFraming.TYPE_STRING, message.getBytes(DataTrackFraming.UTF_8));
+    }
+
+    boolean send(byte[] message) {
+        return enqueue(DataTrackFraming.TYPE_BINARY, message);
+    }
+
+    /**
+     * Drop everything that hasn't been sent yet.
+     */
+    synchronized void release() {
+        handler.removeCallbacks(flushRunnable);
+        pendingSize = 0;
+        ready.clear();
+        queuedBytes = 0;
+        flushScheduled = false;
+    }
+
+    private synchronized boolean enqueue(byte type, byte[] payload) {
+        int frameSize = DataTrackFraming.FRAME_HEADER_SIZE + payload.length;
+        if (queuedBytes + frameSize > config.maxQueuedBytes) {
+            Log.w(TwilioPackage.TAG, "DataTrackBatcher: " + queuedBytes + " bytes queued, dropping message");
+            return false;
+        }
+        if (pendingSize > 0 && pendingSize + frameSize > config.maxMessageSize) {
+            seal();
+        }
+        if (pendingSize == 0) {
+            // a message larger than maxMessageSize goes out in a batch of its own
+            ensureCapacity(DataTrackFraming.HEADER_SIZE + frameSize);
+            putInt(DataTrackFraming.MAGIC);
+        } else {
+            ensureCapacity(pendingSize + frameSize);
+        }
+        pending[pendingSize++] = type;
+        putInt(payload.length);
+        System.arraycopy(payload, 0, pending, pendingSize, payload.length);
+        pendingSize += payload.length;
+        queuedBytes += frameSize;
+        scheduleFlush(config.flushIntervalMs);
+        return true;
+    }
+
+    // guarded by this
+    private void ensureCapacity(int size) {
+        if (pending.length < size) {
+            pending = Arrays.copyOf(pending, Math.max(size, Math.min(2 * pending.length, config.maxMessageSize)));
+        }
+    }
+
+    // guarded by this, big endian like DataTrackFraming reads it
+    private void putInt(int value) {
+        pending[pendingSize++] = (byte) (value >>> 24);
+        pending[pendingSize++] = (byte) (value >>> 16);
+        pending[pendingSize++] = (byte) (value >>> 8);
+        pending[pendingSize++] = (byte) value;
+    }
+
+    // guarded by this
+    private void seal() {
+        if (pendingSize > 0) {
+            ready.add(ByteBuffer.wrap(Arrays.copyOf(pending, pendingSize)));
+            pendingSize = 0;
+        }
+    }
+
+    // guarded by this
+    private void scheduleFlush(long delayMs) {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            handler.postDelayed(flushRunnable, delayMs);
+        }
+    }
+
+    private void flush() {
+        List<ByteBuffer> batches = new ArrayList<>();
+        synchronized (this) {
+            flushScheduled = false;
+            while (true) {
+                // while rate limited the pending batch keeps filling instead of being sent part full
+                if (ready.isEmpty()) {
+                    seal();
+                }
+                if (ready.isEmpty()) {
+                    break;
+                }
+                long waitMs = takeToken();
+                if (waitMs > 0) {
+                    scheduleFlush(waitMs);
+                    break;
+                }
+                ByteBuffer batch = ready.poll();
+                queuedBytes -= batch.remaining() - DataTrackFraming.HEADER_SIZE;
+                batches.add(batch);
+            }
+        }
+        for (ByteBuffer batch : batches) {
+            track.send(batch);
+        }
+    }
+
+    // guarded by this, returns how long to wait for the next token, 0 if one was taken
+    private long takeToken() {
+        if (config.maxMessagesPerSecond == 0) {
+            return 0;
+        }
+        long now = SystemClock.elapsedRealtime();
+        tokens = Math.min(config.maxMessagesPerSecond,
+                tokens + (now - lastRefillMs) * config.maxMessagesPerSecond / 1000.0);
+        lastRefillMs = now;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) * 1000 / config.maxMessagesPerSecond);
+    }
+}
@@ -0,0 +1,72 @@
+package com.twiliorn.library;
+
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/**
+ * Wire format of batched data track messages: a 4 byte magic followed by frames of a 1 byte type, a 4 byte big endian
+ * payload length and the payload (UTF-8 for strings). A batch is sent as one binary data track message and unpacked
+ * by the receiving side when it has batching enabled too; otherwise, and for binary messages that don't start with the
+ * magic, messages are delivered as they are.
+ */
+final class DataTrackFraming {
+    interface Receiver {
+        void onString(String message);
+
+        void onBinary(ByteBuffer message);
+    }
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+    static final int MAGIC = 0x524E4442; // "RNDB"
+    static final int HEADER_SIZE = 4;
+    static final int FRAME_HEADER_SIZE = 5;
+    static final byte TYPE_STRING = 0;
+    static final byte TYPE_BINARY = 1;
+
+    private DataTrackFraming() {}
+
+    static boolean isFramed(ByteBuffer message) {
+        return message.remaining() >= HEADER_SIZE
+                && message.duplicate().order(ByteOrder.BIG_ENDIAN).getInt() == MAGIC;
+    }
+
+    /**
+     * Deliver the frames of a batch to {@code receiver}. Binary frames are slices of {@code message}, valid only
+     * during the callback. Stops at the first malformed frame.
+     */
+    static void unpack(ByteBuffer message, Receiver receiver) {
+        ByteBuffer batch = message.duplicate().order(ByteOrder.BIG_ENDIAN);
+        batch.position(batch.position() + HEADER_SIZE);
+        while (batch.remaining() >= FRAME_HEADER_SIZE) {
+            byte type = batch.get();
+            int length = batch.getInt();
+            if (length < 0 || length > batch.remaining()) {
+                Log.w(TwilioPackage.TAG, "DataTrackFraming: dropping malformed frame of " + length + " bytes");
+                return;
+            }
+            ByteBuffer payload = batch.slice();
+            payload.limit(length);
+            batch.position(batch.position() + length);
+
+            if (type == TYPE_STRING) {
+                receiver.onString(decodeString(payload));
+            } else if (type == TYPE_BINARY) {
+                receiver.onBinary(payload);
+            } else {
+                Log.w(TwilioPackage.TAG, "DataTrackFraming: skipping frame of unknown type " + type);
+            }
+        }
+    }
+
+    private static String decodeString(ByteBuffer payload) {
+        if (payload.hasArray()) {
+            return new String(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining(), UTF_8);
+        }
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
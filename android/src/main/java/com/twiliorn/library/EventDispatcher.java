@@ -0,0 +1,172 @@
+package com.twiliorn.library;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableNativeArray;
+import com.facebook.react.bridge.WritableNativeMap;
+import com.facebook.react.uimanager.events.RCTEventEmitter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Queues view events and sends them to JS once per frame (or per flush interval) instead of crossing the bridge for
+ * each one. Events pushed with a coalescing key replace the queued event with the same name and key, so state
+ * updates like network quality per participant only deliver their latest value.
+ * <p>
+ * With a batch event name, a flush with several events for a view sends them as one
+ * {@code {events: [{name, data}]}} event that JS unpacks; otherwise they are sent one by one. A negative flush
+ * interval turns queueing off and sends every event right away, once the events queued before have been sent.
+ * <p>
+ * Events can be pushed from any thread, they are flushed on the main thread.
+ */
+final class EventDispatcher {
+    private static final class Event {
+        final int viewId;
+        final String name;
+        final WritableMap data;
+
+        Event(int viewId, String name, WritableMap data) {
+            this.viewId = viewId;
+            this.name = name;
+            this.data = data;
+        }
+    }
+
+    private final RCTEventEmitter emitter;
+    @Nullable private final String batchEventName;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable flushRunnable = this::flush;
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> flush();
+    private final Runnable postFrameCallback = () -> Choreographer.getInstance().postFrameCallback(frameCallback);
+
+    // guarded by this
+    private Map<String, Event> queue = new LinkedHashMap<>();
+    private long sequence;
+    private long flushIntervalMs;
+    private boolean flushScheduled;
+    // set while a flush sends its events outside the lock
+    private boolean flushing;
+
+    EventDispatcher(RCTEventEmitter emitter, @Nullable String batchEventName) {
+        this.emitter = emitter;
+        this.batchEventName = batchEventName;
+    }
+
+    /**
+     * 0 flushes on the next frame, a negative interval sends events right away once the queue has drained.
+     */
+    void setFlushInterval(long flushIntervalMs) {
+        synchronized (this) {
+            this.flushIntervalMs = flushIntervalMs;
+            if (flushIntervalMs < 0 && !queue.isEmpty()) {
+                // don't wait for a flush scheduled with the previous interval
+                flushScheduled = true;
+                mainHandler.post(flushRunnable);
+            }
+        }
+    }
+
+    void push(int viewId, String name, WritableMap data) {
+        push(viewId, name, data, null);
+    }
+
+    /**
+     * Queue an event, replacing a queued one with the same view, name and {@code coalescingKey} if it is not null.
+     */
+    void push(int viewId, String name, WritableMap data, @Nullable String coalescingKey) {
+        synchronized (this) {
+            // without queueing, events still wait behind queued ones so they reach JS in order
+            if (flushIntervalMs >= 0 || !queue.isEmpty() || flushing) {
+                String key = coalescingKey != null
+                        ? viewId + ":" + name + ":" + coalescingKey
+                        : "#" + sequence++;
+                // move superseded events to the end, so they are delivered in the order of their latest update
+                queue.remove(key);
+                queue.put(key, new Event(viewId, name, data));
+                scheduleFlush();
+                return;
+            }
+        }
+        emitter.receiveEvent(viewId, name, data);
+    }
+
+    // guarded by this
+    private void scheduleFlush() {
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        if (flushIntervalMs < 0) {
+            mainHandler.post(flushRunnable);
+        } else if (flushIntervalMs == 0) {
+            mainHandler.post(postFrameCallback);
+        } else {
+            mainHandler.postDelayed(flushRunnable, flushIntervalMs);
+        }
+    }
+
+    private void flush() {
+        Map<String, Event> events;
+        synchronized (this) {
+            flushScheduled = false;
+            if (queue.isEmpty()) {
+                return;
+            }
+            events = queue;
+            queue = new LinkedHashMap<>();
+            flushing = true;
+        }
+        try {
+            send(events);
+        } finally {
+            synchronized (this) {
+                flushing = false;
+                // events pushed without queueing while these were sent
+                if (!queue.isEmpty()) {
+                    scheduleFlush();
+                }
+            }
+        }
+    }
+
+    private void send(Map<String, Event> events) {
+        Map<Integer, List<Event>> eventsByView = new LinkedHashMap<>();
+        for (Event event : events.values()) {
+            List<Event> viewEvents = eventsByView.get(event.viewId);
+            if (viewEvents == null) {
+                viewEvents = new ArrayList<>();
+                eventsByView.put(event.viewId, viewEvents);
+            }
+            viewEvents.add(event);
+        }
+
+        for (Map.Entry<Integer, List<Event>> entry : eventsByView.entrySet()) {
+            List<Event> viewEvents = entry.getValue();
+            if (batchEventName == null || viewEvents.size() == 1) {
+                for (Event event : viewEvents) {
+                    emitter.receiveEvent(event.viewId, event.name, event.data);
+                }
+                continue;
+            }
+            WritableArray batch = new WritableNativeArray();
+            for (Event event : viewEvents) {
+                WritableMap item = new WritableNativeMap();
+                item.putString("name", event.name);
+                item.putMap("data", event.data);
+                batch.pushMap(item);
+            }
+            WritableMap payload = new WritableNativeMap();
+            payload.putArray("events", batch);
+            emitter.receiveEvent(entry.getKey(), batchEventName, payload);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.twiliorn.library;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A sequence of frame captures: either a fixed number of frames at a minimum interval, or every Nth frame until the
+ * burst is stopped. Frames are named {@code <burstId>_<sequence>}.
+ * <p>
+ * {@link #nextRequest} is only called from the capture thread.
+ */
+final class FrameCaptureBurst {
+    final String burstId;
+    final boolean toMemory;
+    final FrameCaptureOptions options;
+    final CapturedFrameQueue.DropPolicy dropPolicy;
+    // 0 captures until the burst is stopped
+    private final int maxFrames;
+    private final long minIntervalNs;
+    private final int frameInterval;
+
+    private int framesSeen = 0;
+    private volatile int framesCaptured = 0;
+    private long lastCaptureTimestampNs = Long.MIN_VALUE;
+
+    FrameCaptureBurst(
+            String burstId,
+            int maxFrames,
+            long minIntervalMs,
+            int frameInterval,
+            boolean toMemory,
+            FrameCaptureOptions options,
+            CapturedFrameQueue.DropPolicy dropPolicy
+    ) {
+        this.burstId = burstId;
+        this.maxFrames = Math.max(0, maxFrames);
+        this.minIntervalNs = TimeUnit.MILLISECONDS.toNanos(Math.max(0, minIntervalMs));
+        this.frameInterval = Math.max(1, frameInterval);
+        this.toMemory = toMemory;
+        this.options = options;
+        this.dropPolicy = dropPolicy;
+    }
+
+    /**
+     * Returns the capture request for this frame, or null if the frame should be skipped.
+     */
+    FrameCaptureRequest nextRequest(long timestampNs) {
+        if (isFinished()) {
+            return null;
+        }
+        if (framesSeen++ % frameInterval != 0) {
+            return null;
+        }
+        if (lastCaptureTimestampNs != Long.MIN_VALUE && timestampNs - lastCaptureTimestampNs < minIntervalNs) {
+            return null;
+        }
+        lastCaptureTimestampNs = timestampNs;
+        return FrameCaptureRequest.forBurst(burstId, framesCaptured++, toMemory, options);
+    }
+
+    boolean isFinished() {
+        return maxFrames > 0 && framesCaptured >= maxFrames;
+    }
+
+    int getFramesCaptured() {
+        return framesCaptured;
+    }
+}
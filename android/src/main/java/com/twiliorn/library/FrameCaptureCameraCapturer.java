@@ -11,21 +11,12 @@ import androidx.annotation.Nullable;
 import com.facebook.react.bridge.ReactContext;
 import com.twilio.video.CameraCapturer;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicBoolean;
-
 import tvi.webrtc.CapturerObserver;
 import tvi.webrtc.SurfaceTextureHelper;
 import tvi.webrtc.VideoFrame;
 
 public class FrameCaptureCameraCapturer extends CameraCapturer {
-    private final AtomicBoolean captureThisFrame = new AtomicBoolean(false);
-    // TODO: FIX THIS. ITS A POTENTIAL MEMORY LEAK.
-    private ReactContext reactContext;
-    // choosing to use single thread since limited i/o resources may be a bottleneck anyways
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
-    private String filename = "";
+    private final FrameCaptureScheduler scheduler = new FrameCaptureScheduler("FrameCaptureCameraCapturer: ");
 
     public FrameCaptureCameraCapturer(@NonNull Context context, @NonNull String cameraId) {
         super(context, cameraId);
@@ -52,15 +43,7 @@ public class FrameCaptureCameraCapturer extends CameraCapturer {
 
             @Override
             public void onFrameCaptured(VideoFrame frame) {
-                if (frame != null && reactContext != null && captureThisFrame.compareAndSet(true, false)) {
-                    frame.retain(); // retain frame so we can save it on background thread, bg thread will handle releasing
-                    Log.d(TwilioPackage.TAG, "FrameCaptureCameraCapturer: Capturing frame on background thread.");
-                    String filename = FrameCaptureCameraCapturer.this.filename;
-                    // save frame on background thread
-                    executorService.execute(() -> {
-                        Utils.saveVideoFrame(frame, reactContext, filename);
-                    });
-                }
+                scheduler.onFrame(frame);
 
                 capturerObserver.onFrameCaptured(frame);
             }
@@ -69,12 +52,30 @@ public class FrameCaptureCameraCapturer extends CameraCapturer {
     }
 
     public void setContext(ReactContext reactContext) {
-        this.reactContext = reactContext;
+        scheduler.setContext(reactContext);
     }
 
     public void captureFrame(String filename) {
-        Log.d(TwilioPackage.TAG, "FrameCaptureCameraCapturer: Setting captureThisFrame flag to true for file " + filename);
-        this.filename = filename;
-        this.captureThisFrame.set(true);
+        captureFrame(filename, FrameCaptureOptions.DEFAULT);
+    }
+
+    public void captureFrame(String filename, FrameCaptureOptions options) {
+        scheduler.request(FrameCaptureRequest.toFile(filename, options));
+    }
+
+    public void captureFrameToMemory(String captureId) {
+        captureFrameToMemory(captureId, FrameCaptureOptions.DEFAULT);
+    }
+
+    public void captureFrameToMemory(String captureId, FrameCaptureOptions options) {
+        scheduler.request(FrameCaptureRequest.toMemory(captureId, options));
+    }
+
+    void startBurst(FrameCaptureBurst burst) {
+        scheduler.startBurst(burst);
+    }
+
+    public void stopBurst() {
+        scheduler.stopBurst();
     }
 }
@@ -0,0 +1,91 @@
+package com.twiliorn.library;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+
+/**
+ * How a captured frame is encoded: output format, quality, and an optional bound on the longest side of the image.
+ * Frames larger than {@code maxDimension} are downscaled before encoding, so encode time and size follow the output.
+ */
+public final class FrameCaptureOptions {
+    public enum Format {
+        JPEG("jpeg", "image/jpeg"),
+        PNG("png", "image/png"),
+        WEBP("webp", "image/webp");
+
+        final String extension;
+        final String mimeType;
+
+        Format(String extension, String mimeType) {
+            this.extension = extension;
+            this.mimeType = mimeType;
+        }
+
+        @SuppressWarnings("deprecation")
+        Bitmap.CompressFormat compressFormat() {
+            switch (this) {
+                case PNG:
+                    return Bitmap.CompressFormat.PNG;
+                case WEBP:
+                    return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                            ? Bitmap.CompressFormat.WEBP_LOSSY
+                            : Bitmap.CompressFormat.WEBP;
+                default:
+                    return Bitmap.CompressFormat.JPEG;
+            }
+        }
+    }
+
+    public static final int DEFAULT_QUALITY = 90;
+    public static final FrameCaptureOptions DEFAULT = new FrameCaptureOptions(Format.JPEG, DEFAULT_QUALITY, 0);
+
+    public final Format format;
+    // 0-100, ignored for PNG
+    public final int quality;
+    // 0 keeps the frame's resolution
+    public final int maxDimension;
+
+    public FrameCaptureOptions(Format format, int quality, int maxDimension) {
+        this.format = format;
+        this.quality = Math.max(0, Math.min(100, quality));
+        this.maxDimension = Math.max(0, maxDimension);
+    }
+
+    /**
+     * Parse {@code {format: 'jpeg' | 'png' | 'webp', quality, maxDimension}} from JS, any key may be omitted.
+     */
+    public static FrameCaptureOptions fromMap(@Nullable ReadableMap options) {
+        if (options == null) {
+            return DEFAULT;
+        }
+        Format format = Format.JPEG;
+        if (options.hasKey("format")) {
+            String name = options.getString("format");
+            for (Format f : Format.values()) {
+                if (f.extension.equals(name)) {
+                    format = f;
+                }
+            }
+        }
+        return new FrameCaptureOptions(
+                format,
+                options.hasKey("quality") ? options.getInt("quality") : DEFAULT_QUALITY,
+                options.hasKey("maxDimension") ? options.getInt("maxDimension") : 0
+        );
+    }
+
+    /**
+     * Scale factor for an image of the given size, at most 1.
+     */
+    float scaleFor(int width, int height) {
+        int longestSide = Math.max(width, height);
+        if (maxDimension == 0 || longestSide <= maxDimension) {
+            return 1f;
+        }
+        return (float) maxDimension / longestSide;
+    }
+}
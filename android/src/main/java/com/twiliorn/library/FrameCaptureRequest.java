@@ -0,0 +1,87 @@
+package com.twiliorn.library;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableMap;
+
+import tvi.webrtc.VideoFrame;
+
+/**
+ * A pending frame capture: where the encoded frame should go, under which name, and how it is encoded.
+ */
+final class FrameCaptureRequest {
+    final String name;
+    final boolean toMemory;
+    final FrameCaptureOptions options;
+    // set for frames captured as part of a burst
+    @Nullable final String burstId;
+    final int sequence;
+
+    private FrameCaptureRequest(
+            String name,
+            boolean toMemory,
+            FrameCaptureOptions options,
+            @Nullable String burstId,
+            int sequence
+    ) {
+        this.name = name;
+        this.toMemory = toMemory;
+        this.options = options;
+        this.burstId = burstId;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Capture to a file named {@code filename}.jpeg in the app's files directory.
+     */
+    static FrameCaptureRequest toFile(String filename) {
+        return toFile(filename, FrameCaptureOptions.DEFAULT);
+    }
+
+    /**
+     * Capture to a file named {@code filename} with the extension of the output format, in the app's files directory.
+     */
+    static FrameCaptureRequest toFile(String filename, FrameCaptureOptions options) {
+        return new FrameCaptureRequest(filename, false, options, null, 0);
+    }
+
+    /**
+     * Capture into {@link CapturedFrameCache} under {@code captureId}.
+     */
+    static FrameCaptureRequest toMemory(String captureId) {
+        return toMemory(captureId, FrameCaptureOptions.DEFAULT);
+    }
+
+    static FrameCaptureRequest toMemory(String captureId, FrameCaptureOptions options) {
+        return new FrameCaptureRequest(captureId, true, options, null, 0);
+    }
+
+    /**
+     * Capture the {@code sequence}th frame of a burst, named {@code <burstId>_<sequence>}.
+     */
+    static FrameCaptureRequest forBurst(String burstId, int sequence, boolean toMemory, FrameCaptureOptions options) {
+        return new FrameCaptureRequest(burstId + "_" + sequence, toMemory, options, burstId, sequence);
+    }
+
+    /**
+     * Encode and deliver a retained frame. Releases the frame.
+     */
+    void process(VideoFrame frame, ReactContext context) {
+        if (toMemory) {
+            Utils.cacheVideoFrame(frame, context, this);
+        } else {
+            Utils.saveVideoFrame(frame, context, this);
+        }
+    }
+
+    /**
+     * Add the burst fields, if any, to a capture event.
+     */
+    void putBurstInfo(WritableMap params) {
+        if (burstId != null) {
+            params.putString("burstId", burstId);
+            params.putInt("sequence", sequence);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.twiliorn.library;
+
+import android.util.Log;
+
+import com.facebook.react.bridge.ReactContext;
+
+import androidx.annotation.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import tvi.webrtc.VideoFrame;
+
+/**
+ * Decides which frames from a capturer or sink get captured and hands them to the encoder.
+ * <p>
+ * One-shot requests are queued so rapid captureFrame calls each get their own frame, and take precedence over an
+ * active burst. Retained frames wait for the encoder in a bounded {@link CapturedFrameQueue}; when it is full a frame
+ * is dropped according to the active burst's drop policy (oldest first without a burst) and JS is notified with
+ * onFrameCaptureDropped. Frames are encoded on the shared {@link CaptureWorkerPool}; if it is saturated the frame is
+ * dropped the same way.
+ * <p>
+ * The camera capturer outlives the view that created it, so the React context is only weakly referenced.
+ */
+final class FrameCaptureScheduler {
+    static final int MAX_PENDING_REQUESTS = 16;
+    static final int MAX_QUEUED_FRAMES = 3;
+
+    private final String logPrefix;
+    private final ConcurrentLinkedQueue<FrameCaptureRequest> pendingRequests = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingRequestCount = new AtomicInteger();
+    private final AtomicReference<FrameCaptureBurst> activeBurst = new AtomicReference<>();
+    private final CapturedFrameQueue frameQueue = new CapturedFrameQueue(MAX_QUEUED_FRAMES);
+    private volatile WeakReference<ReactContext> context = new WeakReference<>(null);
+
+    FrameCaptureScheduler(String logPrefix) {
+        this.logPrefix = logPrefix;
+    }
+
+    void setContext(ReactContext context) {
+        this.context = new WeakReference<>(context);
+    }
+
+    @Nullable
+    private ReactContext getContext() {
+        return context.get();
+    }
+
+    /**
+     * Capture the next frame not already claimed by an earlier request.
+     */
+    void request(FrameCaptureRequest request) {
+        if (pendingRequestCount.incrementAndGet() > MAX_PENDING_REQUESTS) {
+            pendingRequestCount.decrementAndGet();
+            Log.w(TwilioPackage.TAG, logPrefix + "Too many pending captures, dropping " + request.name);
+            ReactContext context = getContext();
+            if (context != null) {
+                Utils.sendFrameCaptureDropped(context, request);
+            }
+            return;
+        }
+        Log.d(TwilioPackage.TAG, logPrefix + "Requesting capture of next frame for " + request.name);
+        pendingRequests.offer(request);
+    }
+
+    /**
+     * Start a burst, replacing any active one.
+     */
+    void startBurst(FrameCaptureBurst burst) {
+        Log.d(TwilioPackage.TAG, logPrefix + "Starting capture burst " + burst.burstId);
+        finishBurst(activeBurst.getAndSet(burst));
+    }
+
+    void stopBurst() {
+        finishBurst(activeBurst.getAndSet(null));
+    }
+
+    /**
+     * True when there are no pending one-shot requests and no active burst.
+     */
+    boolean isIdle() {
+        return pendingRequestCount.get() == 0 && activeBurst.get() == null;
+    }
+
+    /**
+     * Drop all pending requests and stop the active burst, e.g. because the source went away.
+     */
+    void cancel() {
+        ReactContext context = getContext();
+        FrameCaptureRequest request;
+        while ((request = pendingRequests.poll()) != null) {
+            pendingRequestCount.decrementAndGet();
+            Log.d(TwilioPackage.TAG, logPrefix + "Cancelling capture " + request.name);
+            if (context != null) {
+                Utils.sendFrameCaptureDropped(context, request);
+            }
+        }
+        stopBurst();
+    }
+
+    /**
+     * Called for every frame on the capture thread.
+     */
+    void onFrame(VideoFrame frame) {
+        ReactContext context = getContext();
+        if (frame == null || context == null) {
+            return;
+        }
+
+        FrameCaptureRequest request = pendingRequests.poll();
+        FrameCaptureBurst burst = activeBurst.get();
+        // one-shot frames share the queue with the burst, so they follow its drop policy too
+        CapturedFrameQueue.DropPolicy dropPolicy =
+                burst != null ? burst.dropPolicy : CapturedFrameQueue.DropPolicy.DROP_OLDEST;
+        if (request != null) {
+            pendingRequestCount.decrementAndGet();
+        } else {
+            if (burst == null) {
+                return;
+            }
+            request = burst.nextRequest(frame.getTimestampNs());
+            if (burst.isFinished() && activeBurst.compareAndSet(burst, null)) {
+                finishBurst(burst);
+            }
+            if (request == null) {
+                return;
+            }
+        }
+
+        frame.retain(); // retain frame so we can save it on background thread, bg thread will handle releasing
+        Log.d(TwilioPackage.TAG, logPrefix + "Capturing frame on background thread.");
+        CapturedFrameQueue.Entry entry = new CapturedFrameQueue.Entry(frame, request);
+        CapturedFrameQueue.Entry dropped = frameQueue.offer(entry, dropPolicy);
+        if (dropped != null) {
+            Log.w(TwilioPackage.TAG, logPrefix + "Encoder is behind, dropping frame for " + dropped.request.name);
+            dropped.frame.release();
+            Utils.sendFrameCaptureDropped(context, dropped.request);
+        }
+        if (dropped != entry) {
+            // save frame on background thread
+            boolean accepted = CaptureWorkerPool.execute(() -> {
+                CapturedFrameQueue.Entry next = frameQueue.poll();
+                if (next != null) {
+                    next.request.process(next.frame, context);
+                }
+            });
+            if (!accepted) {
+                CapturedFrameQueue.Entry rejected = frameQueue.poll();
+                if (rejected != null) {
+                    Log.w(TwilioPackage.TAG,
+                            logPrefix + "Capture workers are busy, dropping frame for " + rejected.request.name);
+                    rejected.frame.release();
+                    Utils.sendFrameCaptureDropped(context, rejected.request);
+                }
+            }
+        }
+    }
+
+    private void finishBurst(FrameCaptureBurst burst) {
+        ReactContext context = getContext();
+        if (burst != null && context != null) {
+            Log.d(TwilioPackage.TAG, logPrefix + "Finished capture burst " + burst.burstId);
+            Utils.sendFrameCaptureBurstFinished(context, burst);
+        }
+    }
+}
@@ -2,22 +2,21 @@ package com.twiliorn.library;
 
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+
 import com.facebook.react.bridge.ReactContext;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import tvi.webrtc.VideoFrame;
 import tvi.webrtc.VideoSink;
 
 public class FrameCapturerVideoSink implements VideoSink {
-    private final AtomicBoolean captureThisFrame = new AtomicBoolean(false);
-    // TODO: FIX THIS. ITS A POTENTIAL MEMORY LEAK.
-    private ReactContext context;
-    // choosing to use single thread since limited i/o resources may be a bottleneck anyways
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
-    private String filename = "";
+    private final FrameCaptureScheduler scheduler = new FrameCaptureScheduler("");
+    // runs on the frame thread once the last pending capture has claimed its frame
+    @Nullable private Runnable onIdleListener;
+    // re-armed after each new request, so the listener runs once per batch of captures
+    private final AtomicBoolean idleNotified = new AtomicBoolean(true);
 
     @Override
     public void onFrame(VideoFrame frame) {
@@ -26,24 +25,61 @@ public class FrameCapturerVideoSink implements VideoSink {
             return;
         }
 
-        if (captureThisFrame.compareAndSet(true, false)) {
-            frame.retain(); // retain frame so we can save it on background thread, bg thread will handle releasing
-            Log.d(TwilioPackage.TAG, "Capturing frame on background thread.");
-            String filename = this.filename;
-            // save frame on background thread
-            executorService.execute(() -> {
-                Utils.saveVideoFrame(frame, context, filename);
-            });
+        scheduler.onFrame(frame);
+
+        Runnable onIdleListener = this.onIdleListener;
+        if (onIdleListener != null && scheduler.isIdle() && idleNotified.compareAndSet(false, true)) {
+            onIdleListener.run();
         }
     }
 
     public void setContext(ReactContext context) {
-        this.context = context;
+        scheduler.setContext(context);
+    }
+
+    /**
+     * Called on the frame thread when the sink has no captures left, so it can be detached from its track. Removing
+     * the sink must not happen on the frame thread itself.
+     */
+    void setOnIdleListener(@Nullable Runnable onIdleListener) {
+        this.onIdleListener = onIdleListener;
     }
 
     public void captureFrame(String filename) {
-        Log.d(TwilioPackage.TAG, "Setting captureThisFrame flag to true for file " + filename);
-        this.filename = filename;
-        this.captureThisFrame.set(true);
+        captureFrame(filename, FrameCaptureOptions.DEFAULT);
+    }
+
+    public void captureFrame(String filename, FrameCaptureOptions options) {
+        scheduler.request(FrameCaptureRequest.toFile(filename, options));
+        idleNotified.set(false);
+    }
+
+    public void captureFrameToMemory(String captureId) {
+        captureFrameToMemory(captureId, FrameCaptureOptions.DEFAULT);
+    }
+
+    public void captureFrameToMemory(String captureId, FrameCaptureOptions options) {
+        scheduler.request(FrameCaptureRequest.toMemory(captureId, options));
+        idleNotified.set(false);
+    }
+
+    void startBurst(FrameCaptureBurst burst) {
+        scheduler.startBurst(burst);
+        idleNotified.set(false);
+    }
+
+    public void stopBurst() {
+        scheduler.stopBurst();
+    }
+
+    boolean isIdle() {
+        return scheduler.isIdle();
+    }
+
+    /**
+     * Drop pending captures, notifying JS with onFrameCaptureDropped.
+     */
+    void cancel() {
+        scheduler.cancel();
     }
 }
@@ -0,0 +1,105 @@
+package com.twiliorn.library;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableNativeArray;
+import com.facebook.react.bridge.WritableNativeMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import tvi.webrtc.HardwareVideoDecoderFactory;
+import tvi.webrtc.HardwareVideoEncoderFactory;
+import tvi.webrtc.VideoCodecInfo;
+
+/**
+ * The hardware video codecs of the device. Probing builds the WebRTC hardware codec factories, which walk
+ * MediaCodecList and can take hundreds of milliseconds, so it is done once per process, ideally ahead of the first
+ * connect via {@link #warmUp()}.
+ * <p>
+ * H264 support detection: https://www.twilio.com/docs/video/managing-codecs
+ */
+final class HardwareCodecSupport {
+    private static HardwareCodecSupport instance;
+
+    final List<String> encoders;
+    final List<String> decoders;
+
+    private HardwareCodecSupport(List<String> encoders, List<String> decoders) {
+        this.encoders = Collections.unmodifiableList(encoders);
+        this.decoders = Collections.unmodifiableList(decoders);
+    }
+
+    /**
+     * The cached capabilities, probing them on the calling thread if that hasn't happened yet.
+     */
+    static synchronized HardwareCodecSupport get() {
+        if (instance == null) {
+            instance = probe();
+        }
+        return instance;
+    }
+
+    /**
+     * Probe on a background thread so {@link #get()} doesn't have to on the connect path.
+     */
+    static void warmUp() {
+        Thread thread = new Thread(HardwareCodecSupport::get, "HardwareCodecSupport");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    boolean isH264Supported() {
+        return contains(encoders, "h264") && contains(decoders, "h264");
+    }
+
+    WritableMap toWritableMap() {
+        WritableMap map = new WritableNativeMap();
+        map.putArray("encoders", toWritableArray(encoders));
+        map.putArray("decoders", toWritableArray(decoders));
+        map.putBoolean("isH264Supported", isH264Supported());
+        return map;
+    }
+
+    private static HardwareCodecSupport probe() {
+        long start = SystemClock.elapsedRealtime();
+        HardwareVideoEncoderFactory encoderFactory = new HardwareVideoEncoderFactory(null, true, true);
+        HardwareVideoDecoderFactory decoderFactory = new HardwareVideoDecoderFactory(null);
+        HardwareCodecSupport support = new HardwareCodecSupport(
+                names(encoderFactory.getSupportedCodecs()), names(decoderFactory.getSupportedCodecs()));
+        Log.i(TwilioPackage.TAG, "Probed hardware codecs in " + (SystemClock.elapsedRealtime() - start)
+                + " ms, encoders: " + support.encoders + ", decoders: " + support.decoders);
+        return support;
+    }
+
+    private static List<String> names(VideoCodecInfo[] codecs) {
+        List<String> names = new ArrayList<>();
+        for (VideoCodecInfo codec : codecs) {
+            if (!contains(names, codec.name)) {
+                names.add(codec.name);
+            }
+        }
+        return names;
+    }
+
+    private static boolean contains(List<String> names, String name) {
+        for (String n : names) {
+            if (n.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static WritableArray toWritableArray(List<String> names) {
+        WritableArray array = new WritableNativeArray();
+        for (String name : names) {
+            array.pushString(name);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,168 @@
+package com.twiliorn.library;
+
+import java.nio.ByteBuffer;
+
+import tvi.webrtc.VideoFrame;
+
+/**
+ * Converts I420 buffers into the NV21 layout expected by {@link android.graphics.YuvImage}, optionally rotating the
+ * image by a multiple of 90 degrees on the way so it only has to be encoded once.
+ * <p>
+ * Planes are read a row at a time with bulk {@link ByteBuffer#get(byte[], int, int)} calls (or a single call when
+ * the Y plane is not padded and no rotation is needed), and the chroma planes are interleaved from pre-fetched row
+ * arrays. The row arrays are kept between calls and the output array is supplied by the caller, so steady-state
+ * conversion allocates nothing.
+ * <p>
+ * Instances are not thread safe.
+ */
+final class I420ToNV21Converter {
+    private byte[] yRow = new byte[0];
+    private byte[] uRow = new byte[0];
+    private byte[] vRow = new byte[0];
+
+    /**
+     * Size in bytes of the NV21 data for a frame of the given dimensions.
+     */
+    static int nv21Size(int width, int height) {
+        // YuvImage assumes an NV21 chroma stride equal to the luma width
+        return width * height + width * ((height + 1) / 2);
+    }
+
+    /**
+     * Normalize a frame rotation to 0, 90, 180 or 270 degrees clockwise.
+     */
+    static int normalizeRotation(int rotation) {
+        int normalized = ((rotation % 360) + 360) % 360;
+        return normalized - normalized % 90;
+    }
+
+    /**
+     * Write the NV21 representation of the given buffer into {@code nv21Data}, which must hold at least
+     * {@link #nv21Size} bytes.
+     */
+    void convert(VideoFrame.I420Buffer i420Buffer, byte[] nv21Data) {
+        convert(i420Buffer, nv21Data, 0);
+    }
+
+    /**
+     * Write the NV21 representation of the given buffer rotated clockwise by {@code rotation} degrees into
+     * {@code nv21Data}. For 90 and 270 degrees the output is {@code height} pixels wide and {@code width} pixels high.
+     */
+    void convert(VideoFrame.I420Buffer i420Buffer, byte[] nv21Data, int rotation) {
+        final int width = i420Buffer.getWidth();
+        final int height = i420Buffer.getHeight();
+        final int chromaWidth = (width + 1) / 2;
+        final int chromaHeight = (height + 1) / 2;
+        final int ySize = width * height;
+
+        if (uRow.length < chromaWidth) {
+            uRow = new byte[chromaWidth];
+            vRow = new byte[chromaWidth];
+        }
+
+        rotation = normalizeRotation(rotation);
+        if (rotation == 0) {
+            copyY(i420Buffer, nv21Data, width, height);
+        } else {
+            rotateY(i420Buffer, nv21Data, width, height, rotation);
+        }
+
+        final ByteBuffer dataU = i420Buffer.getDataU().duplicate();
+        final ByteBuffer dataV = i420Buffer.getDataV().duplicate();
+        final int strideU = i420Buffer.getStrideU();
+        final int strideV = i420Buffer.getStrideV();
+        final int outWidth = rotation % 180 == 0 ? width : height;
+        final int outChromaWidth = (outWidth + 1) / 2;
+        // With odd output widths a V/U row is one byte wider than the stride; the trailing U sample is dropped.
+        final boolean dropLastU = (outWidth & 1) != 0;
+        final byte[] uRow = this.uRow;
+        final byte[] vRow = this.vRow;
+        for (int y = 0; y < chromaHeight; ++y) {
+            dataU.position(y * strideU);
+            dataU.get(uRow, 0, chromaWidth);
+            dataV.position(y * strideV);
+            dataV.get(vRow, 0, chromaWidth);
+
+            // offset of the V/U pair for source sample (0, y), and the distance between samples x and x + 1
+            final int base;
+            final int step;
+            switch (rotation) {
+                case 90:
+                    base = 2 * (chromaHeight - 1 - y);
+                    step = outWidth;
+                    break;
+                case 180:
+                    base = (chromaHeight - 1 - y) * outWidth + 2 * (outChromaWidth - 1);
+                    step = -2;
+                    break;
+                case 270:
+                    base = (chromaWidth - 1) * outWidth + 2 * y;
+                    step = -outWidth;
+                    break;
+                default:
+                    base = y * outWidth;
+                    step = 2;
+                    break;
+            }
+
+            for (int x = 0; x < chromaWidth; ++x) {
+                final int offset = base + x * step;
+                nv21Data[ySize + offset] = vRow[x];
+                if (!dropLastU || offset % outWidth != outWidth - 1) {
+                    nv21Data[ySize + offset + 1] = uRow[x];
+                }
+            }
+        }
+    }
+
+    private static void copyY(VideoFrame.I420Buffer i420Buffer, byte[] nv21Data, int width, int height) {
+        final ByteBuffer dataY = i420Buffer.getDataY().duplicate();
+        final int strideY = i420Buffer.getStrideY();
+        if (strideY == width) {
+            dataY.position(0);
+            dataY.get(nv21Data, 0, width * height);
+        } else {
+            for (int y = 0; y < height; ++y) {
+                dataY.position(y * strideY);
+                dataY.get(nv21Data, y * width, width);
+            }
+        }
+    }
+
+    private void rotateY(VideoFrame.I420Buffer i420Buffer, byte[] nv21Data, int width, int height, int rotation) {
+        if (yRow.length < width) {
+            yRow = new byte[width];
+        }
+        final byte[] yRow = this.yRow;
+        final ByteBuffer dataY = i420Buffer.getDataY().duplicate();
+        final int strideY = i420Buffer.getStrideY();
+        // width of the rotated image for 90/270
+        final int outWidth = height;
+        for (int y = 0; y < height; ++y) {
+            dataY.position(y * strideY);
+            dataY.get(yRow, 0, width);
+
+            // offset of source pixel (0, y), and the distance between pixels x and x + 1
+            final int base;
+            final int step;
+            switch (rotation) {
+                case 90:
+                    base = height - 1 - y;
+                    step = outWidth;
+                    break;
+                case 180:
+                    base = (height - 1 - y) * width + width - 1;
+                    step = -1;
+                    break;
+                default:
+                    base = (width - 1) * outWidth + y;
+                    step = -outWidth;
+                    break;
+            }
+
+            for (int x = 0; x < width; ++x) {
+                nv21Data[base + x * step] = yRow[x];
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.twiliorn.library;
+
+import android.content.Context;
+import android.os.Handler;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+import com.twilio.video.DataTrackOptions;
+import com.twilio.video.LocalDataTrack;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The data tracks requested from JS in addition to the default one, each created with its own
+ * {@link DataTrackOptions} so latency sensitive streams can use unordered, unreliable channels while others stay
+ * reliable. Sends are routed by track name, with a {@link DataTrackBatcher} per track while batching is on.
+ */
+final class NamedDataTracks {
+    // guarded by this, sends hold the lock too so none reaches a track released in the meantime
+    private final Map<String, LocalDataTrack> tracks = new LinkedHashMap<>();
+    // guarded by this
+    private final Map<String, DataTrackBatcher> batchers = new LinkedHashMap<>();
+
+    NamedDataTracks(Context context, List<DataTrackOptions> options) {
+        for (DataTrackOptions trackOptions : options) {
+            LocalDataTrack track = LocalDataTrack.create(context, trackOptions);
+            if (track == null) {
+                Log.w(TwilioPackage.TAG, "Failed to create data track " + trackOptions.name);
+                continue;
+            }
+            tracks.put(trackOptions.name, track);
+        }
+    }
+
+    /**
+     * Parse {@code [{name, ordered, maxPacketLifeTime, maxRetransmits}]} from JS. Entries without a name or with a
+     * name already used are skipped.
+     */
+    static List<DataTrackOptions> fromArray(@Nullable ReadableArray array) {
+        if (array == null) {
+            return Collections.emptyList();
+        }
+        List<DataTrackOptions> options = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < array.size(); i++) {
+            if (array.getType(i) != ReadableType.Map) {
+                continue;
+            }
+            ReadableMap map = array.getMap(i);
+            String name = map.hasKey("name") && !map.isNull("name") ? map.getString("name") : null;
+            if (name == null || name.isEmpty() || names.contains(name)) {
+                Log.w(TwilioPackage.TAG, "Ignoring data track without a unique name: " + name);
+                continue;
+            }
+            names.add(name);
+
+            DataTrackOptions.Builder builder = new DataTrackOptions.Builder().name(name);
+            if (map.hasKey("ordered")) {
+                builder.ordered(map.getBoolean("ordered"));
+            }
+            boolean hasMaxRetransmits = map.hasKey("maxRetransmits") && !map.isNull("maxRetransmits");
+            if (hasMaxRetransmits) {
+                builder.maxRetransmits(map.getInt("maxRetransmits"));
+            }
+            if (map.hasKey("maxPacketLifeTime") && !map.isNull("maxPacketLifeTime")) {
+                // WebRTC rejects channels with both limits set
+                if (hasMaxRetransmits) {
+                    Log.w(TwilioPackage.TAG, "Data track " + name
+                            + ": maxPacketLifeTime and maxRetransmits are exclusive, using maxRetransmits");
+                } else {
+                    builder.maxPacketLifeTime(map.getInt("maxPacketLifeTime"));
+                }
+            }
+            options.add(builder.build());
+        }
+        return options;
+    }
+
+    synchronized List<LocalDataTrack> getTracks() {
+        return new ArrayList<>(tracks.values());
+    }
+
+    /**
+     * Batch sends on every track with {@code config}, or stop batching if it is disabled.
+     */
+    synchronized void setBatching(Handler handler, DataTrackBatcher.Config config) {
+        releaseBatchers();
+        if (!config.enabled) {
+            return;
+        }
+        for (Map.Entry<String, LocalDataTrack> entry : tracks.entrySet()) {
+            batchers.put(entry.getKey(), new DataTrackBatcher(entry.getValue(), handler, config));
+        }
+    }
+
+    synchronized boolean send(String name, String message) {
+        DataTrackBatcher batcher = batchers.get(name);
+        if (batcher != null) {
+            return batcher.send(message);
+        }
+        LocalDataTrack track = getTrack(name);
+        if (track == null) {
+            return false;
+        }
+        track.send(message);
+        return true;
+    }
+
+    synchronized boolean send(String name, byte[] message) {
+        DataTrackBatcher batcher = batchers.get(name);
+        if (batcher != null) {
+            return batcher.send(message);
+        }
+        LocalDataTrack track = getTrack(name);
+        if (track == null) {
+            return false;
+        }
+        track.send(ByteBuffer.wrap(message));
+        return true;
+    }
+
+    synchronized void release() {
+        releaseBatchers();
+        for (LocalDataTrack track : tracks.values()) {
+            track.release();
+        }
+        tracks.clear();
+    }
+
+    // guarded by this
+    @Nullable
+    private LocalDataTrack getTrack(String name) {
+        LocalDataTrack track = tracks.get(name);
+        if (track == null) {
+            Log.w(TwilioPackage.TAG, "No data track named " + name);
+        }
+        return track;
+    }
+
+    // guarded by this
+    private void releaseBatchers() {
+        for (DataTrackBatcher batcher : batchers.values()) {
+            batcher.release();
+        }
+        batchers.clear();
+    }
+}
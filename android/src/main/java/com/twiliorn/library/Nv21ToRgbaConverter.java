@@ -0,0 +1,44 @@
+package com.twiliorn.library;
+
+/**
+ * Converts NV21 (BT.601, video range) to the RGBA byte layout used by {@code Bitmap.copyPixelsFromBuffer} for
+ * ARGB_8888 bitmaps, for output formats that {@code YuvImage} can't encode.
+ */
+final class Nv21ToRgbaConverter {
+    private Nv21ToRgbaConverter() {}
+
+    static int rgbaSize(int width, int height) {
+        return width * height * 4;
+    }
+
+    /**
+     * {@code nv21Data} must be laid out as produced by {@link I420ToNV21Converter}, {@code rgba} must hold at least
+     * {@link #rgbaSize} bytes.
+     */
+    static void convert(byte[] nv21Data, int width, int height, byte[] rgba) {
+        final int frameSize = width * height;
+        int out = 0;
+        for (int row = 0; row < height; row++) {
+            final int yRow = row * width;
+            final int vuRow = frameSize + (row >> 1) * width;
+            final int vuRowEnd = vuRow + width;
+            for (int col = 0; col < width; col++) {
+                // fixed point, scaled by 1024
+                final int y = 1192 * Math.max(0, (nv21Data[yRow + col] & 0xff) - 16);
+                final int vIndex = vuRow + (col & ~1);
+                final int v = (nv21Data[vIndex] & 0xff) - 128;
+                // odd widths have no U for the last column
+                final int u = vIndex + 1 < vuRowEnd ? (nv21Data[vIndex + 1] & 0xff) - 128 : 0;
+
+                rgba[out++] = clamp((y + 1634 * v) >> 10);
+                rgba[out++] = clamp((y - 833 * v - 400 * u) >> 10);
+                rgba[out++] = clamp((y + 2066 * u) >> 10);
+                rgba[out++] = (byte) 0xff;
+            }
+        }
+    }
+
+    private static byte clamp(int value) {
+        return (byte) (value < 0 ? 0 : value > 255 ? 255 : value);
+    }
+}
@@ -7,9 +7,11 @@
 package com.twiliorn.library;
 
 import android.graphics.Point;
+import android.graphics.Rect;
 import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import androidx.annotation.StringDef;
 
 import com.facebook.react.bridge.WritableMap;
@@ -32,7 +34,15 @@ public class RNVideoViewGroup extends ViewGroup {
     private final Object layoutSync = new Object();
     private RendererCommon.ScalingType scalingType = RendererCommon.ScalingType.SCALE_ASPECT_FILL;
     private final RCTEventEmitter eventEmitter;
+    private final EventDispatcher eventDispatcher;
     public boolean isRemote;
+    // whether any part of the view is on screen, off-screen remote views stop receiving frames
+    private boolean inViewport = true;
+    private final Rect visibleRect = new Rect();
+    private int renderWidth = 0;
+    private int renderHeight = 0;
+    private final ViewTreeObserver.OnScrollChangedListener scrollChangedListener = this::updateViewportVisibility;
+    private final ViewTreeObserver.OnGlobalLayoutListener globalLayoutListener = this::updateViewportVisibility;
 
     @Retention(RetentionPolicy.SOURCE)
     @StringDef({ON_FRAME_DIMENSIONS_CHANGED})
@@ -41,12 +51,14 @@ public class RNVideoViewGroup extends ViewGroup {
     }
 
     void pushEvent(View view, String name, WritableMap data) {
-        eventEmitter.receiveEvent(view.getId(), name, data);
+        // frame dimension changes are state, only the latest one per frame is sent
+        eventDispatcher.push(view.getId(), name, data, "");
     }
 
     public RNVideoViewGroup(ThemedReactContext themedReactContext) {
         super(themedReactContext);
         this.eventEmitter = themedReactContext.getJSModule(RCTEventEmitter.class);
+        this.eventDispatcher = new EventDispatcher(eventEmitter, null);
         textureViewRenderer = new PatchedVideoView(themedReactContext);
         textureViewRenderer.setVideoScaleType(VideoScaleType.ASPECT_FILL);
 
@@ -90,6 +102,50 @@ public class RNVideoViewGroup extends ViewGroup {
         this.scalingType = scalingType;
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        ViewTreeObserver observer = getViewTreeObserver();
+        observer.addOnScrollChangedListener(scrollChangedListener);
+        observer.addOnGlobalLayoutListener(globalLayoutListener);
+        updateViewportVisibility();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        ViewTreeObserver observer = getViewTreeObserver();
+        observer.removeOnScrollChangedListener(scrollChangedListener);
+        observer.removeOnGlobalLayoutListener(globalLayoutListener);
+        setInViewport(false);
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateViewportVisibility();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateViewportVisibility();
+    }
+
+    private void updateViewportVisibility() {
+        setInViewport(isAttachedToWindow() && isShown() && getGlobalVisibleRect(visibleRect));
+    }
+
+    private void setInViewport(boolean inViewport) {
+        if (this.inViewport == inViewport) {
+            return;
+        }
+        this.inViewport = inViewport;
+        if (isRemote) {
+            CustomTwilioVideoView.setPrimaryVideoViewVisible(textureViewRenderer, inViewport);
+        }
+    }
+
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
         int height = b - t;
@@ -129,5 +185,11 @@ public class RNVideoViewGroup extends ViewGroup {
             b = t + displaySize.y;
         }
         textureViewRenderer.layout(l, t, r, b);
+
+        if (isRemote && (r - l != renderWidth || b - t != renderHeight)) {
+            renderWidth = r - l;
+            renderHeight = b - t;
+            CustomTwilioVideoView.setPrimaryVideoViewSize(textureViewRenderer, renderWidth, renderHeight);
+        }
     }
 }
@@ -0,0 +1,152 @@
+package com.twiliorn.library;
+
+import android.graphics.Matrix;
+import android.opengl.GLES20;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import tvi.webrtc.GlRectDrawer;
+import tvi.webrtc.GlTextureFrameBuffer;
+import tvi.webrtc.TextureBufferImpl;
+import tvi.webrtc.VideoFrame;
+import tvi.webrtc.VideoFrameDrawer;
+
+/**
+ * Reads back texture frames (camera and hardware decoder output) without {@code toI420()}: the texture is drawn, already
+ * rotated and scaled, into an offscreen RGBA framebuffer on the thread that owns its GL context, and the pixels are
+ * compressed as a Bitmap by the caller. This skips the GPU YUV conversion, the I420 readback and the CPU NV21
+ * conversion.
+ * <p>
+ * Only {@link TextureBufferImpl} exposes its GL thread, so other buffers go through the I420 path instead.
+ * <p>
+ * The drawer and framebuffer of each GL thread are kept for its next frames until {@link #release()}. The GL
+ * context itself belongs to the thread's owner (the capturer or the decoder), so only our own objects are deleted.
+ */
+final class TextureFrameEncoder {
+    static final int BYTES_PER_PIXEL = 4;
+
+    // GL objects are only valid on the thread whose context created them, so keep one set per GL thread.
+    // Guarded by itself.
+    private static final Map<Looper, GlResources> glResources = new HashMap<>();
+
+    private TextureFrameEncoder() {}
+
+    static boolean canEncode(VideoFrame frame) {
+        VideoFrame.Buffer buffer = frame.getBuffer();
+        return buffer instanceof TextureBufferImpl && ((TextureBufferImpl) buffer).getToI420Handler() != null;
+    }
+
+    /**
+     * Draw the frame at {@code width}x{@code height} (the rotated output size, downscaling on the GPU) and read it back
+     * into {@code rgba}. Returns false if the frame could not be read back. Does not release the frame.
+     */
+    static boolean readPixels(VideoFrame frame, int rotation, int width, int height, byte[] rgba) {
+        TextureBufferImpl buffer = (TextureBufferImpl) frame.getBuffer();
+        Handler glHandler = buffer.getToI420Handler();
+        ByteBuffer pixels = ByteBuffer.wrap(rgba, 0, width * height * BYTES_PER_PIXEL);
+        // the retained frame holds on to its texture, so the GL thread stays alive until the task has run
+        FutureTask<Boolean> readback =
+                new FutureTask<>(() -> drawAndReadPixels(glHandler, buffer, rotation, width, height, pixels));
+        try {
+            return glHandler.post(readback) && readback.get();
+        } catch (ExecutionException e) {
+            Log.w(TwilioPackage.TAG, "TextureFrameEncoder: failed to read back texture frame", e.getCause());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Delete the GL objects of every GL thread, on that thread. Threads that have quit since took their objects with
+     * their context. Readbacks after this create new ones.
+     */
+    static void release() {
+        List<GlResources> released;
+        synchronized (glResources) {
+            released = new ArrayList<>(glResources.values());
+            glResources.clear();
+        }
+        for (GlResources gl : released) {
+            gl.handler.post(gl::release);
+        }
+    }
+
+    // runs on the frame's GL thread
+    private static GlResources getGlResources(Handler glHandler) {
+        synchronized (glResources) {
+            GlResources gl = glResources.get(glHandler.getLooper());
+            if (gl == null) {
+                // drop the sets of GL threads that have quit, e.g. when the capturer was recreated
+                for (Iterator<Looper> it = glResources.keySet().iterator(); it.hasNext(); ) {
+                    if (!it.next().getThread().isAlive()) {
+                        it.remove();
+                    }
+                }
+                gl = new GlResources(glHandler);
+                glResources.put(glHandler.getLooper(), gl);
+            }
+            return gl;
+        }
+    }
+
+    // runs on the frame's GL thread
+    private static boolean drawAndReadPixels(
+            Handler glHandler,
+            TextureBufferImpl buffer,
+            int rotation,
+            int width,
+            int height,
+            ByteBuffer pixels
+    ) {
+        GlResources gl = getGlResources(glHandler);
+        gl.frameBuffer.setSize(width, height);
+
+        Matrix renderMatrix = new Matrix();
+        renderMatrix.preTranslate(0.5f, 0.5f);
+        renderMatrix.preRotate(rotation);
+        // glReadPixels returns the bottom row first, flip so the bitmap starts at the top
+        renderMatrix.preScale(1f, -1f);
+        renderMatrix.preTranslate(-0.5f, -0.5f);
+
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, gl.frameBuffer.getFrameBufferId());
+        VideoFrameDrawer.drawTexture(gl.drawer, buffer, renderMatrix, width, height, 0, 0, width, height);
+        GLES20.glReadPixels(0, 0, width, height, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, pixels);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+
+        int error = GLES20.glGetError();
+        if (error != GLES20.GL_NO_ERROR) {
+            Log.w(TwilioPackage.TAG, "TextureFrameEncoder: GL error " + error);
+            return false;
+        }
+        return true;
+    }
+
+    private static final class GlResources {
+        // the GL thread the objects belong to
+        final Handler handler;
+        final GlRectDrawer drawer = new GlRectDrawer();
+        final GlTextureFrameBuffer frameBuffer = new GlTextureFrameBuffer(GLES20.GL_RGBA);
+
+        GlResources(Handler handler) {
+            this.handler = handler;
+        }
+
+        // runs on the GL thread
+        void release() {
+            drawer.release();
+            frameBuffer.release();
+        }
+    }
+}
@@ -24,6 +24,9 @@ public class TwilioPackage implements ReactPackage {
 
     @Override
     public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
+        // probe hardware codecs off the connect path; cameras are enumerated on the first local video request,
+        // once the CAMERA permission has had a chance to be granted
+        HardwareCodecSupport.warmUp();
         return Collections.emptyList();
     }
 
@@ -2,9 +2,7 @@ package com.twiliorn.library;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.ImageFormat;
-import android.graphics.Matrix;
 import android.graphics.Rect;
 import android.graphics.YuvImage;
 import android.util.Log;
@@ -14,8 +12,6 @@ import com.facebook.react.bridge.ReactContext;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 
-import java.io.ByteArrayOutputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -25,100 +21,260 @@ import tvi.webrtc.VideoFrame;
 public final class Utils {
     private Utils() {}
 
-    /**
-     * TODO: refactor to use more optimized Streem code: https://github.com/streem/streem-app/blob/main/android/StreemSDK/src/main/java/pro/streem/sdk/internal/util/ImageUtil.kt
-     * Create an NV21Buffer with the same pixel content as the given I420 buffer. Ripped from here: https://stackoverflow.com/a/55158228
-     */
-    private static byte[] createNV21Data(VideoFrame.I420Buffer i420Buffer) {
-        final int width = i420Buffer.getWidth();
-        final int height = i420Buffer.getHeight();
-        final int chromaStride = width;
-        final int chromaWidth = (width + 1) / 2;
-        final int chromaHeight = (height + 1) / 2;
-        final int ySize = width * height;
-        final ByteBuffer nv21Buffer = ByteBuffer.allocateDirect(ySize + chromaStride * chromaHeight);
-        // We don't care what the array offset is since we only want an array that is direct.
-        @SuppressWarnings("ByteBufferBackingArray") final byte[] nv21Data = nv21Buffer.array();
-        for (int y = 0; y < height; ++y) {
-            for (int x = 0; x < width; ++x) {
-                final byte yValue = i420Buffer.getDataY().get(y * i420Buffer.getStrideY() + x);
-                nv21Data[y * width + x] = yValue;
+    static final String ON_FRAME_CAPTURED = "onFrameCaptured";
+    static final String ON_FRAME_CAPTURE_DROPPED = "onFrameCaptureDropped";
+    static final String ON_FRAME_CAPTURE_BURST_FINISHED = "onFrameCaptureBurstFinished";
+    static final String ON_FRAME_CAPTURE_FAILED = "onFrameCaptureFailed";
+
+    // one per capture worker thread, the converter is not thread safe
+    private static final ThreadLocal<I420ToNV21Converter> nv21Converter =
+            new ThreadLocal<I420ToNV21Converter>() {
+                @Override
+                protected I420ToNV21Converter initialValue() {
+                    return new I420ToNV21Converter();
+                }
+            };
+    private static final CaptureBufferPool bufferPool = new CaptureBufferPool(CaptureBufferPool.DEFAULT_MAX_POOLED_BYTES);
+
+    public static void saveVideoFrame(VideoFrame frame, ReactContext context, String filename) {
+        saveVideoFrame(frame, context, FrameCaptureRequest.toFile(filename));
+    }
+
+    static void saveVideoFrame(VideoFrame frame, ReactContext context, FrameCaptureRequest request) {
+        Log.d(TwilioPackage.TAG, "saving video frame");
+        String filePath = request.name + "." + request.options.format.extension;
+        Log.d(TwilioPackage.TAG, "saving frame for file " + filePath);
+
+        CaptureBufferPool.JpegOutputStream out = bufferPool.acquireOutputStream();
+        try {
+            encodeVideoFrame(frame, request.options, out);
+
+            try (FileOutputStream fos = context.openFileOutput(filePath, Context.MODE_PRIVATE)) {
+                // write image to disk
+                out.writeTo(fos);
+                Log.d(TwilioPackage.TAG, "saved frame to " + filePath);
+                // send event to JS w/ filename
+                WritableMap params = Arguments.createMap();
+                params.putString("filename", filePath);
+                request.putBurstInfo(params);
+                sendEvent(context, ON_FRAME_CAPTURED, params);
             }
+        } catch (IOException e) {
+            // runs on a capture worker, a full disk or a bad path must not take the app down
+            Log.e(TwilioPackage.TAG, "Failed to save frame to " + filePath, e);
+            sendFrameCaptureFailed(context, request, "Failed to save frame to " + filePath + ": " + e.getMessage());
+        } finally {
+            bufferPool.releaseOutputStream(out);
         }
-        for (int y = 0; y < chromaHeight; ++y) {
-            for (int x = 0; x < chromaWidth; ++x) {
-                final byte uValue = i420Buffer.getDataU().get(y * i420Buffer.getStrideU() + x);
-                final byte vValue = i420Buffer.getDataV().get(y * i420Buffer.getStrideV() + x);
-                nv21Data[ySize + y * chromaStride + 2 * x + 0] = vValue;
-                nv21Data[ySize + y * chromaStride + 2 * x + 1] = uValue;
+    }
+
+    /**
+     * Encode the frame and keep it in {@link CapturedFrameCache} under the request name instead of writing it to
+     * disk. JS receives the name as {@code captureId} in the onFrameCaptured event.
+     */
+    static void cacheVideoFrame(VideoFrame frame, ReactContext context, FrameCaptureRequest request) {
+        Log.d(TwilioPackage.TAG, "caching frame for capture " + request.name);
+
+        CaptureBufferPool.JpegOutputStream out = bufferPool.acquireOutputStream();
+        try {
+            encodeVideoFrame(frame, request.options, out);
+            // copy out of the pooled stream, it is reused by the next capture
+            byte[] imageBytes = out.toByteArray();
+            if (!CapturedFrameCache.put(request.name, imageBytes)) {
+                sendFrameCaptureFailed(context, request, "Captured frame of " + imageBytes.length
+                        + " bytes is larger than the frame cache (" + CapturedFrameCache.getMaxBytes() + " bytes)");
+                return;
             }
+
+            WritableMap params = Arguments.createMap();
+            params.putString("captureId", request.name);
+            params.putInt("byteLength", imageBytes.length);
+            params.putString("mimeType", request.options.format.mimeType);
+            request.putBurstInfo(params);
+            sendEvent(context, ON_FRAME_CAPTURED, params);
+        } finally {
+            bufferPool.releaseOutputStream(out);
         }
-        return nv21Data;
     }
 
-    // i420 -> nv21 -> yuv -> jpeg
-    public static void saveVideoFrame(VideoFrame frame, ReactContext context, String filename) {
-        Log.d(TwilioPackage.TAG, "saving video frame");
-        String filePath = filename + ".jpeg";
-        Log.d(TwilioPackage.TAG, "saving frame for file " + filePath);
+    /**
+     * Tell JS that a requested frame was dropped because the encoder fell behind.
+     */
+    static void sendFrameCaptureDropped(ReactContext context, FrameCaptureRequest request) {
+        WritableMap params = Arguments.createMap();
+        params.putString(request.toMemory ? "captureId" : "filename", request.name);
+        request.putBurstInfo(params);
+        sendEvent(context, ON_FRAME_CAPTURE_DROPPED, params);
+    }
+
+    /**
+     * Tell JS that a requested frame could not be captured, with the reason in {@code error}.
+     */
+    static void sendFrameCaptureFailed(ReactContext context, FrameCaptureRequest request, String error) {
+        WritableMap params = Arguments.createMap();
+        params.putString(request.toMemory ? "captureId" : "filename", request.name);
+        params.putString("error", error);
+        request.putBurstInfo(params);
+        sendEvent(context, ON_FRAME_CAPTURE_FAILED, params);
+    }
 
-        VideoFrame.I420Buffer i420Buffer = frame.getBuffer().toI420();
-        final int width = i420Buffer.getWidth();
-        final int height = i420Buffer.getHeight();
-        Log.w(TwilioPackage.TAG, "frame width: " + width + ", height: " + height);
+    static void sendFrameCaptureBurstFinished(ReactContext context, FrameCaptureBurst burst) {
+        WritableMap params = Arguments.createMap();
+        params.putString("burstId", burst.burstId);
+        params.putInt("framesCaptured", burst.getFramesCaptured());
+        sendEvent(context, ON_FRAME_CAPTURE_BURST_FINISHED, params);
+    }
 
-        byte[] nv21Data = createNV21Data(i420Buffer);
+    // releases the frame
+    private static void encodeVideoFrame(
+            VideoFrame frame,
+            FrameCaptureOptions options,
+            CaptureBufferPool.JpegOutputStream out
+    ) {
+        encodeVideoFrame(frame, options, out, true);
+    }
 
-        YuvImage yuvImage = new YuvImage(nv21Data, ImageFormat.NV21, width, height, null);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        yuvImage.compressToJpeg(new Rect(0, 0, width, height), 90, out);
-        byte[] rawImageBytes = out.toByteArray();
-        byte[] imageBytes = rotateJPEGByteArray(rawImageBytes, frame.getRotation());
+    /**
+     * Encode and release the frame, returning the path it went through ("texture" or "i420"). With
+     * {@code allowTexture} false texture frames take the I420 path too, so CaptureEncodeBenchmark can compare both.
+     */
+    static String encodeVideoFrame(
+            VideoFrame frame,
+            FrameCaptureOptions options,
+            CaptureBufferPool.JpegOutputStream out,
+            boolean allowTexture
+    ) {
+        final CaptureTrace trace = CaptureTrace.start(bufferPool);
+        final VideoFrame.Buffer buffer = frame.getBuffer();
+        final int rotation = I420ToNV21Converter.normalizeRotation(frame.getRotation());
+        final int rotatedWidth = rotation % 180 == 0 ? buffer.getWidth() : buffer.getHeight();
+        final int rotatedHeight = rotation % 180 == 0 ? buffer.getHeight() : buffer.getWidth();
+        Log.w(TwilioPackage.TAG, "frame width: " + buffer.getWidth() + ", height: " + buffer.getHeight());
 
-        try (FileOutputStream fos = context.openFileOutput(filePath, Context.MODE_PRIVATE)) {
-            // write image to disk
-            fos.write(imageBytes);
-            Log.d(TwilioPackage.TAG, "saved frame to " + filePath);
-            // send event to JS w/ filename
-            WritableMap params = Arguments.createMap();
-            params.putString("filename", filePath);
-            sendEvent(context, "onFrameCaptured", params);
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException(e);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        final float scale = options.scaleFor(rotatedWidth, rotatedHeight);
+        final int imageWidth = scaledSize(rotatedWidth, scale);
+        final int imageHeight = scaledSize(rotatedHeight, scale);
+
+        String path = "texture";
+        try {
+            // texture frames are drawn and read back on the GPU, everything else (or a failed readback) goes via I420
+            if (!allowTexture
+                    || !TextureFrameEncoder.canEncode(frame)
+                    || !encodeTexture(frame, rotation, imageWidth, imageHeight, options, out, trace)) {
+                path = "i420";
+                out.reset();
+                encodeI420(buffer, rotation, imageWidth, imageHeight, options, out, trace);
+            }
         } finally {
             frame.release();
-            i420Buffer.release();
         }
+        if (trace.isEnabled()) {
+            Log.d(TwilioPackage.TAG, "encoded " + imageWidth + "x" + imageHeight + " " + options.format + " via "
+                    + path + ": " + trace.summary());
+        }
+        return path;
+    }
+
+    // downscaled sizes are kept even for the chroma planes
+    private static int scaledSize(int size, float scale) {
+        return scale < 1f ? Math.max(2, Math.round(size * scale) & ~1) : size;
+    }
 
+    private static boolean encodeTexture(
+            VideoFrame frame,
+            int rotation,
+            int imageWidth,
+            int imageHeight,
+            FrameCaptureOptions options,
+            CaptureBufferPool.JpegOutputStream out,
+            CaptureTrace trace
+    ) {
+        byte[] rgba = bufferPool.acquireByteArray(Nv21ToRgbaConverter.rgbaSize(imageWidth, imageHeight));
+        try {
+            if (!TextureFrameEncoder.readPixels(frame, rotation, imageWidth, imageHeight, rgba)) {
+                return false;
+            }
+            trace.mark("readback");
+            boolean compressed = compressRgba(rgba, imageWidth, imageHeight, options, out);
+            trace.mark("compress");
+            return compressed;
+        } finally {
+            bufferPool.releaseByteArray(rgba);
+        }
     }
 
-    private static byte[] rotateJPEGByteArray(
-        byte[] data,
-        float rotation
+    // (scale) -> i420 -> rotated nv21 -> yuv -> jpeg, or -> rgba -> bitmap -> png/webp
+    private static void encodeI420(
+            VideoFrame.Buffer buffer,
+            int rotation,
+            int imageWidth,
+            int imageHeight,
+            FrameCaptureOptions options,
+            CaptureBufferPool.JpegOutputStream out,
+            CaptureTrace trace
     ) {
-        if (rotation == 0f) {
-            return data;
+        // scale in YUV first so the conversions below only touch output pixels
+        final int scaledWidth = rotation % 180 == 0 ? imageWidth : imageHeight;
+        final int scaledHeight = rotation % 180 == 0 ? imageHeight : imageWidth;
+        VideoFrame.I420Buffer i420Buffer;
+        if (scaledWidth == buffer.getWidth() && scaledHeight == buffer.getHeight()) {
+            i420Buffer = buffer.toI420();
+        } else {
+            VideoFrame.Buffer scaledBuffer =
+                    buffer.cropAndScale(0, 0, buffer.getWidth(), buffer.getHeight(), scaledWidth, scaledHeight);
+            i420Buffer = scaledBuffer.toI420();
+            scaledBuffer.release();
         }
-        else {
-            Bitmap sourceBitmap = BitmapFactory.decodeByteArray(data, 0, data.length);
-            Bitmap rotatedBitmap = rotateBitmap(sourceBitmap, rotation);
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            rotatedBitmap.compress(Bitmap.CompressFormat.JPEG, 100, byteArrayOutputStream);
-            sourceBitmap.recycle();
-            rotatedBitmap.recycle();
-            return byteArrayOutputStream.toByteArray();
+        trace.mark("toI420");
+
+        // rotate while converting so the image is encoded once, instead of decoding and re-encoding it
+        byte[] nv21Data = bufferPool.acquireByteArray(I420ToNV21Converter.nv21Size(imageWidth, imageHeight));
+        try {
+            nv21Converter.get().convert(i420Buffer, nv21Data, rotation);
+            trace.mark("nv21");
+            if (options.format == FrameCaptureOptions.Format.JPEG) {
+                YuvImage yuvImage = new YuvImage(nv21Data, ImageFormat.NV21, imageWidth, imageHeight, null);
+                yuvImage.compressToJpeg(new Rect(0, 0, imageWidth, imageHeight), options.quality, out);
+                trace.mark("compress");
+            } else {
+                byte[] rgba = bufferPool.acquireByteArray(Nv21ToRgbaConverter.rgbaSize(imageWidth, imageHeight));
+                try {
+                    Nv21ToRgbaConverter.convert(nv21Data, imageWidth, imageHeight, rgba);
+                    trace.mark("rgba");
+                    compressRgba(rgba, imageWidth, imageHeight, options, out);
+                    trace.mark("compress");
+                } finally {
+                    bufferPool.releaseByteArray(rgba);
+                }
+            }
+        } finally {
+            i420Buffer.release();
+            bufferPool.releaseByteArray(nv21Data);
         }
     }
 
-    private static Bitmap rotateBitmap(
-        Bitmap sourceBitmap,
-        float rotation
+    private static boolean compressRgba(
+            byte[] rgba,
+            int width,
+            int height,
+            FrameCaptureOptions options,
+            CaptureBufferPool.JpegOutputStream out
     ) {
-        Matrix matrix = new Matrix();
-        matrix.postRotate(rotation);
-        return Bitmap.createBitmap(sourceBitmap, 0, 0, sourceBitmap.getWidth(), sourceBitmap.getHeight(), matrix, true);
+        // pooled like the arrays, copyPixelsFromBuffer overwrites every pixel
+        Bitmap bitmap = bufferPool.acquireBitmap(width, height);
+        try {
+            bitmap.copyPixelsFromBuffer(ByteBuffer.wrap(rgba, 0, Nv21ToRgbaConverter.rgbaSize(width, height)));
+            return bitmap.compress(options.format.compressFormat(), options.quality, out);
+        } finally {
+            bufferPool.releaseBitmap(bitmap);
+        }
+    }
+
+    /**
+     * Drop the pooled capture buffers, e.g. when the video view is released.
+     */
+    public static void releaseCaptureBuffers() {
+        bufferPool.clear();
     }
 
     private static void sendEvent(ReactContext context, String event, WritableMap params) {
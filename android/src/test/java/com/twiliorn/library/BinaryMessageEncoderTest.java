@@ -0,0 +1,100 @@
+package com.twiliorn.library;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.Assert.assertEquals;
+
+public class BinaryMessageEncoderTest {
+    private static final byte[] MESSAGE = bytes(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 250, 251, 252, 253, 254, 255);
+
+    private final BinaryMessageEncoder encoder =
+            new BinaryMessageEncoder((input, offset, length) ->
+                    Base64.getEncoder().encodeToString(Arrays.copyOfRange(input, offset, offset + length)));
+
+    @Test
+    public void encodesHeapBuffer() {
+        ByteBuffer message = ByteBuffer.wrap(MESSAGE);
+
+        assertEquals(base64(MESSAGE, 0, MESSAGE.length), encoder.encode(message));
+        assertEquals(0, message.position());
+    }
+
+    @Test
+    public void encodesRemainingBytesOfHeapBuffer() {
+        ByteBuffer message = ByteBuffer.wrap(MESSAGE, 3, 5);
+
+        assertEquals(base64(MESSAGE, 3, 5), encoder.encode(message));
+        assertEquals(3, message.position());
+        assertEquals(8, message.limit());
+    }
+
+    @Test
+    public void encodesSliceWithArrayOffset() {
+        ByteBuffer buffer = ByteBuffer.wrap(MESSAGE);
+        buffer.position(4);
+        ByteBuffer slice = buffer.slice();
+        slice.position(2);
+        slice.limit(7);
+
+        // bytes 6 to 10 of the backing array
+        assertEquals(base64(MESSAGE, 6, 5), encoder.encode(slice));
+        assertEquals(2, slice.position());
+    }
+
+    @Test
+    public void encodesDirectBuffer() {
+        ByteBuffer message = direct(MESSAGE);
+        message.position(2);
+
+        assertEquals(base64(MESSAGE, 2, MESSAGE.length - 2), encoder.encode(message));
+        assertEquals(2, message.position());
+    }
+
+    @Test
+    public void encodesDirectSlice() {
+        ByteBuffer buffer = direct(MESSAGE);
+        buffer.position(9);
+        ByteBuffer slice = buffer.slice();
+        slice.limit(4);
+
+        assertEquals(base64(MESSAGE, 9, 4), encoder.encode(slice));
+        assertEquals(0, slice.position());
+    }
+
+    @Test
+    public void reusesScratchForSmallerDirectBuffers() {
+        // the scratch array grown by the first message must not leak its tail into the second
+        assertEquals(base64(MESSAGE, 0, MESSAGE.length), encoder.encode(direct(MESSAGE)));
+        ByteBuffer small = direct(bytes(42, 43));
+        assertEquals(base64(bytes(42, 43), 0, 2), encoder.encode(small));
+    }
+
+    @Test
+    public void encodesEmptyBuffers() {
+        assertEquals("", encoder.encode(ByteBuffer.allocate(0)));
+        assertEquals("", encoder.encode(ByteBuffer.allocateDirect(0)));
+    }
+
+    private static String base64(byte[] bytes, int offset, int length) {
+        return Base64.getEncoder().encodeToString(Arrays.copyOfRange(bytes, offset, offset + length));
+    }
+
+    private static ByteBuffer direct(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,100 @@
+package com.twiliorn.library;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Times the CPU stages of a capture on the JVM: I420 to NV21 with each rotation, and NV21 to RGBA for PNG and WebP
+ * captures, at 480p, 720p and 1080p with padded strides. Prints ns/op and bytes allocated per op, and fails if a
+ * stage starts allocating in steady state.
+ * <p>
+ * The JPEG, PNG and WebP encoders themselves are Android code; CaptureEncodeBenchmark times them on a device.
+ * Run alone with {@code ./gradlew test --tests com.twiliorn.library.I420ToNV21ConverterBenchmark}.
+ */
+public class I420ToNV21ConverterBenchmark {
+    private static final int[][] SIZES = {{640, 480}, {1280, 720}, {1920, 1080}};
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+    // row alignment of typical decoder and camera buffers
+    private static final int STRIDE_ALIGNMENT = 64;
+    private static final int WARMUP_OPS = 20;
+    private static final int MEASURED_OPS = 50;
+    // the ByteBuffer views taken per call, the output and row arrays are reused
+    private static final long MAX_BYTES_PER_OP = 1024;
+
+    private interface Op {
+        void run();
+    }
+
+    @Test
+    public void convertI420ToNv21() {
+        I420ToNV21Converter converter = new I420ToNV21Converter();
+        Random random = new Random(42);
+        for (int[] size : SIZES) {
+            TestI420Buffer buffer = TestI420Buffer.random(size[0], size[1], padding(size[0]), random);
+            byte[] nv21 = new byte[I420ToNV21Converter.nv21Size(size[0], size[1])];
+            for (int rotation : ROTATIONS) {
+                measure("nv21 " + size[0] + "x" + size[1] + " rotation " + rotation,
+                        () -> converter.convert(buffer, nv21, rotation));
+            }
+        }
+    }
+
+    @Test
+    public void convertNv21ToRgba() {
+        I420ToNV21Converter converter = new I420ToNV21Converter();
+        Random random = new Random(42);
+        for (int[] size : SIZES) {
+            TestI420Buffer buffer = TestI420Buffer.random(size[0], size[1], padding(size[0]), random);
+            byte[] nv21 = new byte[I420ToNV21Converter.nv21Size(size[0], size[1])];
+            converter.convert(buffer, nv21, 0);
+            byte[] rgba = new byte[Nv21ToRgbaConverter.rgbaSize(size[0], size[1])];
+            measure("rgba " + size[0] + "x" + size[1],
+                    () -> Nv21ToRgbaConverter.convert(nv21, size[0], size[1], rgba));
+        }
+    }
+
+    private static int padding(int width) {
+        int stride = (width + STRIDE_ALIGNMENT) / STRIDE_ALIGNMENT * STRIDE_ALIGNMENT;
+        return stride - width;
+    }
+
+    private static void measure(String name, Op op) {
+        for (int i = 0; i < WARMUP_OPS; i++) {
+            op.run();
+        }
+        long startAllocatedBytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_OPS; i++) {
+            op.run();
+        }
+        long nsPerOp = (System.nanoTime() - start) / MEASURED_OPS;
+        long endAllocatedBytes = allocatedBytes();
+
+        if (startAllocatedBytes < 0 || endAllocatedBytes < 0) {
+            System.out.println(String.format(Locale.US, "%-28s %,12d ns/op", name, nsPerOp));
+            return;
+        }
+        long bytesPerOp = (endAllocatedBytes - startAllocatedBytes) / MEASURED_OPS;
+        System.out.println(String.format(Locale.US, "%-28s %,12d ns/op %,8d bytes/op", name, nsPerOp, bytesPerOp));
+        assertTrue(name + " allocates " + bytesPerOp + " bytes/op", bytesPerOp <= MAX_BYTES_PER_OP);
+    }
+
+    // bytes allocated by this thread so far, -1 where the JVM doesn't count them
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean hotspotThreads = (com.sun.management.ThreadMXBean) threads;
+        if (!hotspotThreads.isThreadAllocatedMemorySupported() || !hotspotThreads.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        return hotspotThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
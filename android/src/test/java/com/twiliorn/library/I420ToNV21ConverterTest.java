@@ -0,0 +1,98 @@
+package com.twiliorn.library;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import tvi.webrtc.VideoFrame;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks {@link I420ToNV21Converter} byte for byte against the per-pixel conversion it replaced, applied to the
+ * image rotated pixel by pixel, for even and odd sizes, padded strides and all four rotations.
+ */
+public class I420ToNV21ConverterTest {
+    private static final int[][] SIZES = {
+            {2, 2}, {4, 2}, {1, 1}, {1, 3}, {3, 1}, {3, 3}, {5, 4}, {4, 5}, {7, 5}, {16, 9}, {33, 17}, {640, 480},
+    };
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+
+    @Test
+    public void matchesPerPixelConversion() {
+        I420ToNV21Converter converter = new I420ToNV21Converter();
+        Random random = new Random(42);
+        for (int[] size : SIZES) {
+            for (int padding : new int[] {0, 3}) {
+                TestI420Buffer buffer = TestI420Buffer.random(size[0], size[1], padding, random);
+                for (int rotation : ROTATIONS) {
+                    assertConverts(converter, buffer, rotation);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void reusesConverterAcrossSizes() {
+        // row arrays kept from a larger frame must not leak into a smaller one
+        I420ToNV21Converter converter = new I420ToNV21Converter();
+        Random random = new Random(7);
+        assertConverts(converter, TestI420Buffer.random(33, 17, 0, random), 90);
+        assertConverts(converter, TestI420Buffer.random(5, 3, 1, random), 270);
+        assertConverts(converter, TestI420Buffer.random(33, 17, 2, random), 180);
+    }
+
+    @Test
+    public void normalizesRotation() {
+        assertEquals(0, I420ToNV21Converter.normalizeRotation(360));
+        assertEquals(270, I420ToNV21Converter.normalizeRotation(-90));
+        assertEquals(90, I420ToNV21Converter.normalizeRotation(450));
+        assertEquals(180, I420ToNV21Converter.normalizeRotation(200));
+    }
+
+    private static void assertConverts(I420ToNV21Converter converter, TestI420Buffer buffer, int rotation) {
+        TestI420Buffer rotated = buffer.rotate(rotation);
+        int size = I420ToNV21Converter.nv21Size(rotated.getWidth(), rotated.getHeight());
+        byte[] expected = Arrays.copyOf(perPixelNv21(rotated), size);
+
+        // stale bytes in the output array must not survive the conversion
+        byte[] actual = new byte[size];
+        Arrays.fill(actual, (byte) 0x5a);
+        converter.convert(buffer, actual, rotation);
+
+        assertArrayEquals(buffer.getWidth() + "x" + buffer.getHeight() + " stride " + buffer.getStrideY()
+                + " rotated " + rotation, expected, actual);
+    }
+
+    /**
+     * The conversion used before {@link I420ToNV21Converter}. For odd widths it writes the trailing U sample of a row
+     * over the first V sample of the next one, and past the end of the array on the last row, so it gets one spare
+     * byte that is cut off again by the caller.
+     */
+    private static byte[] perPixelNv21(VideoFrame.I420Buffer i420Buffer) {
+        final int width = i420Buffer.getWidth();
+        final int height = i420Buffer.getHeight();
+        final int chromaStride = width;
+        final int chromaWidth = (width + 1) / 2;
+        final int chromaHeight = (height + 1) / 2;
+        final int ySize = width * height;
+        final byte[] nv21Data = new byte[ySize + chromaStride * chromaHeight + 1];
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                final byte yValue = i420Buffer.getDataY().get(y * i420Buffer.getStrideY() + x);
+                nv21Data[y * width + x] = yValue;
+            }
+        }
+        for (int y = 0; y < chromaHeight; ++y) {
+            for (int x = 0; x < chromaWidth; ++x) {
+                final byte uValue = i420Buffer.getDataU().get(y * i420Buffer.getStrideU() + x);
+                final byte vValue = i420Buffer.getDataV().get(y * i420Buffer.getStrideV() + x);
+                nv21Data[ySize + y * chromaStride + 2 * x + 0] = vValue;
+                nv21Data[ySize + y * chromaStride + 2 * x + 1] = uValue;
+            }
+        }
+        return nv21Data;
+    }
+}
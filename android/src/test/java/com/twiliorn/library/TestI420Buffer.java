@@ -0,0 +1,152 @@
+package com.twiliorn.library;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import tvi.webrtc.VideoFrame;
+
+/**
+ * An I420 buffer backed by direct buffers like the ones handed out by WebRTC, optionally with padded strides.
+ */
+final class TestI420Buffer implements VideoFrame.I420Buffer {
+    private final int width;
+    private final int height;
+    private final int strideY;
+    private final int strideUV;
+    private final ByteBuffer dataY;
+    private final ByteBuffer dataU;
+    private final ByteBuffer dataV;
+
+    TestI420Buffer(int width, int height, int strideY, int strideUV, byte[] y, byte[] u, byte[] v) {
+        this.width = width;
+        this.height = height;
+        this.strideY = strideY;
+        this.strideUV = strideUV;
+        // direct, like the buffers handed out by WebRTC
+        this.dataY = direct(y);
+        this.dataU = direct(u);
+        this.dataV = direct(v);
+    }
+
+    static TestI420Buffer random(int width, int height, int padding, Random random) {
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        byte[] y = new byte[(width + padding) * height];
+        byte[] u = new byte[(chromaWidth + padding) * chromaHeight];
+        byte[] v = new byte[(chromaWidth + padding) * chromaHeight];
+        random.nextBytes(y);
+        random.nextBytes(u);
+        random.nextBytes(v);
+        return new TestI420Buffer(width, height, width + padding, chromaWidth + padding, y, u, v);
+    }
+
+    /**
+     * This image rotated clockwise pixel by pixel, without padding.
+     */
+    TestI420Buffer rotate(int rotation) {
+        int outWidth = rotation % 180 == 0 ? width : height;
+        int outHeight = rotation % 180 == 0 ? height : width;
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        int outChromaWidth = (outWidth + 1) / 2;
+        return new TestI420Buffer(outWidth, outHeight, outWidth, outChromaWidth,
+                rotatePlane(dataY, strideY, width, height, rotation),
+                rotatePlane(dataU, strideUV, chromaWidth, chromaHeight, rotation),
+                rotatePlane(dataV, strideUV, chromaWidth, chromaHeight, rotation));
+    }
+
+    private static byte[] rotatePlane(ByteBuffer plane, int stride, int width, int height, int rotation) {
+        int outWidth = rotation % 180 == 0 ? width : height;
+        byte[] out = new byte[width * height];
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                int outX;
+                int outY;
+                switch (rotation) {
+                    case 90:
+                        outX = height - 1 - y;
+                        outY = x;
+                        break;
+                    case 180:
+                        outX = width - 1 - x;
+                        outY = height - 1 - y;
+                        break;
+                    case 270:
+                        outX = y;
+                        outY = width - 1 - x;
+                        break;
+                    default:
+                        outX = x;
+                        outY = y;
+                        break;
+                }
+                out[outY * outWidth + outX] = plane.get(y * stride + x);
+            }
+        }
+        return out;
+    }
+
+    private static ByteBuffer direct(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public ByteBuffer getDataY() {
+        return dataY.slice();
+    }
+
+    @Override
+    public ByteBuffer getDataU() {
+        return dataU.slice();
+    }
+
+    @Override
+    public ByteBuffer getDataV() {
+        return dataV.slice();
+    }
+
+    @Override
+    public int getStrideY() {
+        return strideY;
+    }
+
+    @Override
+    public int getStrideU() {
+        return strideUV;
+    }
+
+    @Override
+    public int getStrideV() {
+        return strideUV;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public VideoFrame.I420Buffer toI420() {
+        return this;
+    }
+
+    @Override
+    public void retain() {}
+
+    @Override
+    public void release() {}
+
+    @Override
+    public VideoFrame.Buffer cropAndScale(
+            int cropX, int cropY, int cropWidth, int cropHeight, int scaleWidth, int scaleHeight) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -43,11 +43,14 @@ declare module 'react-native-twilio-video-webrtc' {
   export interface DataTrackEventCbArgs {
     message: string;
     trackSid: string;
+    // Android only
+    trackName?: string;
   }
 
   export interface DataTrackBinaryEventCbArgs {
     message: Uint8Array;
     trackSid: string;
+    trackName?: string;
   }
 
   export type DataTrackEventCb = (t: DataTrackEventCbArgs) => void;
@@ -109,6 +112,60 @@ declare module 'react-native-twilio-video-webrtc' {
     d: LocalParticipantSupportedCodecsCbEventArgs,
   ) => void;
 
+  /**
+   * Android only. The requested capture size and frame rate, the closest format the camera supports is used.
+   * Missing values default to 1280x720 at 30 fps.
+   */
+  export type VideoFormat = {
+    width?: number;
+    height?: number;
+    fps?: number;
+  };
+
+  export type LocalVideoFormatChangedEventArgs = {
+    cameraId: string;
+    width: number;
+    height: number;
+    fps: number;
+    requestedWidth: number;
+    requestedHeight: number;
+    requestedFps: number;
+    // 0 when capturing at the requested format, higher while adaptive capture steps it down
+    adaptiveLevel: number;
+  };
+
+  export type HardwareCodecSupportEventArgs = {
+    encoders: Array<string>;
+    decoders: Array<string>;
+    isH264Supported: boolean;
+  };
+
+  export type HardwareCodecSupportCb = (
+    p: HardwareCodecSupportEventArgs
+  ) => void;
+
+  export type LocalVideoFormatChangedCb = (
+    p: LocalVideoFormatChangedEventArgs
+  ) => void;
+
+  /**
+   * Android only. `maxDimension` bounds the longest side of the image, larger frames are downscaled before encoding.
+   * `quality` (0-100, default 90) is ignored for `png`.
+   */
+  export type FrameCaptureOptions = {
+    format?: 'jpeg' | 'png' | 'webp';
+    quality?: number;
+    maxDimension?: number;
+  };
+
+  export type FrameCaptureBurstOptions = FrameCaptureOptions & {
+    count?: number;
+    intervalMs?: number;
+    everyNthFrame?: number;
+    toMemory?: boolean;
+    dropPolicy?: 'dropOldest' | 'dropNewest';
+  };
+
   export type TwilioVideoProps = ViewProps & {
     onCameraDidStart?: () => void;
     onCameraDidStopRunning?: (err: any) => void;
@@ -126,6 +183,10 @@ declare module 'react-native-twilio-video-webrtc' {
     onParticipantRemovedDataTrack?: TrackEventCb;
     onRoomDidConnect?: RoomEventCb;
     onFlashlightStatusChanged?: FlashlightStatusChangedEventCb;
+    // Android only
+    onLocalVideoFormatChanged?: LocalVideoFormatChangedCb;
+    // Android only
+    onHardwareCodecSupport?: HardwareCodecSupportCb;
     onRoomDidDisconnect?: RoomErrorEventCb;
     onRoomDidFailToConnect?: RoomErrorEventCb;
     onRoomParticipantDidConnect?: ParticipantEventCb;
@@ -137,6 +198,17 @@ declare module 'react-native-twilio-video-webrtc' {
     onDataTrackBinaryMessageReceived?: DataTrackBinaryEventCb;
 
     localVideoTrackName?: string;
+    /**
+     * Android only. How often queued native events are delivered, in ms. 0 (the default) delivers them
+     * once per frame, a negative value delivers each event right away. Network quality, dominant speaker
+     * and stats events queued in the same interval only deliver their latest value.
+     */
+    eventFlushIntervalMs?: number;
+    /**
+     * Android only. The most threads frame captures are encoded on, 4 by default and never more than the
+     * number of cores. Shared by every TwilioVideo component.
+     */
+    maxCaptureThreads?: number;
     // iOS only
     autoInitializeCamera?: boolean;
     ref?: React.Ref<any>;
@@ -168,15 +240,92 @@ declare module 'react-native-twilio-video-webrtc' {
     enableRemoteAudio?: boolean;
     encodingParameters?: {
       enableH264Codec?: boolean;
+      // publish VP8 in several quality layers; not used when H264 is enabled and supported
+      enableVp8Simulcast?: boolean;
+      // max send bitrates, as on iOS: if audioBitrate OR videoBitrate is provided you should provide both,
+      // a missing or 0 one defaults to 40 for audio and 1500 for video
+      audioBitrate?: number;
+      videoBitrate?: number;
     };
     enableNetworkQualityReporting?: boolean;
     maintainVideoTrackInBackground?: boolean;
+    /**
+     * Subscribe to each remote video track at the size its `TwilioVideoParticipantView`s are drawn at.
+     * The largest visible view of a track sets its render dimensions and subscriber priority:
+     * `low` up to `lowPriorityMaxDimension` (default 240) pixels, `high` from
+     * `highPriorityMinDimension` (default 720), `standard` in between. Updates are debounced
+     * by `debounceMs` (default 250).
+     */
+    adaptiveSubscription?: {
+      enabled?: boolean;
+      debounceMs?: number;
+      lowPriorityMaxDimension?: number;
+      highPriorityMinDimension?: number;
+    };
+    /**
+     * The video bandwidth profile for the room. Unset fields keep the SDK defaults.
+     * `maxSubscriptionBitrate` is in kbps. With `adaptiveSubscription` enabled,
+     * `videoContentPreferencesMode` is always `manual`.
+     */
+    bandwidthProfile?: {
+      mode?: "grid" | "collaboration" | "presentation";
+      maxSubscriptionBitrate?: number;
+      dominantSpeakerPriority?: "low" | "standard" | "high";
+      trackSwitchOffMode?: "disabled" | "predicted" | "detected";
+      clientTrackSwitchOffControl?: "auto" | "manual";
+      videoContentPreferencesMode?: "auto" | "manual";
+    };
+    videoFormat?: VideoFormat;
+    /**
+     * Step the capture format down (1080p, 720p, 720p at 24 fps, 540p at 24 fps, 540p at 15 fps)
+     * while the device reports a moderate or worse thermal status (Android 10+), or the sent frame rate
+     * stays below `minFrameRateRatio` (default 0.7) of the capture rate for `lowFrameRateSamples`
+     * (default 3) stats samples taken every `statsIntervalMs` (default 5000). Steps down are at least
+     * `stepDownDelayMs` (default 10000) apart, steps back up need `stepUpDelayMs` (default 60000)
+     * of a cool device and a healthy frame rate. Each step rebuilds the local video track.
+     */
+    adaptiveCapture?: {
+      enabled?: boolean;
+      statsIntervalMs?: number;
+      stepDownDelayMs?: number;
+      stepUpDelayMs?: number;
+      minFrameRateRatio?: number;
+      lowFrameRateSamples?: number;
+    };
+    /**
+     * Pack `sendString`/`sendBinary` messages into batches of up to `maxMessageSize` (default 16384)
+     * bytes, sent every `flushIntervalMs` (default 20). `maxMessagesPerSecond` (default 0, no limit)
+     * caps the number of batches sent per second; messages beyond `maxQueuedBytes` (default 1 MiB)
+     * waiting to be sent are dropped. Receivers on this library that enabled batching too unpack
+     * batches into the usual message events; others receive them as binary messages.
+     */
+    dataTrackBatching?: {
+      enabled?: boolean;
+      maxMessageSize?: number;
+      flushIntervalMs?: number;
+      maxMessagesPerSecond?: number;
+      maxQueuedBytes?: number;
+    };
+    /**
+     * Data tracks to publish next to the default one, sent on by passing their `name` to
+     * `sendString`/`sendBinary`. `ordered` defaults to true; setting `maxRetransmits` or
+     * `maxPacketLifeTime` (ms, exclusive with `maxRetransmits`) makes the track unreliable, e.g.
+     * `{name: 'pointer', ordered: false, maxRetransmits: 0}` for live pointer positions.
+     */
+    dataTracks?: {
+      name: string;
+      ordered?: boolean;
+      maxPacketLifeTime?: number;
+      maxRetransmits?: number;
+    }[];
   };
 
   class TwilioVideo extends React.Component<TwilioVideoProps> {
     setLocalVideoEnabled: (
       enabled: boolean,
       cameraType?: cameraType,
+      // Android only
+      videoFormat?: VideoFormat,
     ) => Promise<boolean>;
     setLocalAudioEnabled: (enabled: boolean) => Promise<boolean>;
     setRemoteAudioEnabled: (enabled: boolean) => Promise<boolean>;
@@ -187,11 +336,25 @@ declare module 'react-native-twilio-video-webrtc' {
     toggleSoundSetup: (speaker: boolean) => void;
     setFlashlightStatus: (enabled: boolean) => void;
     getStats: () => void;
+    /**
+     * Android only. Reports the hardware video codecs of the device via `onHardwareCodecSupport`.
+     * They are probed once per process.
+     */
+    getHardwareCodecSupport: () => void;
     publishLocalAudio: () => void;
     unpublishLocalAudio: () => void;
     publishLocalVideo: () => void;
     unpublishLocalVideo: () => void;
-    sendString: (message: string) => void;
+    /**
+     * `trackName` (Android only) sends on one of the `dataTracks` given to `connect` instead of
+     * the default data track.
+     */
+    sendString: (message: string, trackName?: string) => void;
+    /**
+     * Android only. Send a binary message on the local data track, or the one of the `dataTracks`
+     * named `trackName`, received as `onDataTrackBinaryMessageReceived` by the other participants.
+     */
+    sendBinary: (message: Uint8Array | ArrayBuffer, trackName?: string) => void;
 
     /**
      * Prepares the local video track so that it can receive a new name.  The local
@@ -213,8 +376,50 @@ declare module 'react-native-twilio-video-webrtc' {
      * Listen to JS event via `DeviceEventEmitter.addListener('onFrameCaptured', ({filename}) => { // code here })`.
      *
      * `import { DeviceEventEmitter } from 'react-native';`
+     *
+     * `options` are Android only; the file extension follows `options.format`. On Android,
+     * `onFrameCaptureFailed` is emitted with `{filename, error}` if the camera is not capturing or
+     * the file could not be written.
+     */
+    captureFrame: (filename: string, options?: FrameCaptureOptions) => void;
+    /**
+     * Android only. Like `captureFrame`, but the encoded image is kept in a native in-memory cache instead of
+     * being written to disk.
+     *
+     * The `onFrameCaptured` event carries `{captureId, byteLength, mimeType}`. Native modules read the bytes with
+     * `CapturedFrameCache.get(captureId)`. The least recently used frames are evicted once the cache exceeds 64 MB.
+     * `onFrameCaptureFailed` is emitted with `{captureId, error}` instead if the camera is not capturing or the
+     * encoded frame alone is larger than the cache.
+     */
+    captureFrameToMemory: (captureId: string, options?: FrameCaptureOptions) => void;
+    /**
+     * Android only. Frees a frame captured with `captureFrameToMemory`.
+     */
+    releaseCapturedFrame: (captureId: string) => void;
+    /**
+     * Android only. Captures a sequence of camera frames named `<burstId>_<sequence>`.
+     *
+     * With `count` set, stops after that many frames, otherwise captures until `stopFrameCaptureBurst` is called.
+     * `intervalMs` is the minimum time between frames and `everyNthFrame` skips frames in between.
+     * Each frame emits `onFrameCaptured` with `burstId` and `sequence`. When the encoder falls behind, frames are
+     * dropped according to `dropPolicy` (default `dropOldest`) and `onFrameCaptureDropped` is emitted instead.
+     * `onFrameCaptureBurstFinished` is emitted with `{burstId, framesCaptured}` when the burst ends.
+     */
+    startFrameCaptureBurst: (burstId: string, options?: FrameCaptureBurstOptions) => void;
+    /**
+     * Android only. Stops the active frame capture burst.
+     */
+    stopFrameCaptureBurst: () => void;
+    /**
+     * Android only. Like `captureFrame`, but captures the next frame of the subscribed remote video track with the
+     * given `trackSid`. Emits `onFrameCaptureFailed` if the track is not subscribed, and `onFrameCaptureDropped` if it
+     * is unsubscribed before a frame arrives.
+     */
+    captureRemoteFrame: (trackSid: string, filename: string, options?: FrameCaptureOptions) => void;
+    /**
+     * Android only. Like `captureFrameToMemory`, but captures from the remote video track with the given `trackSid`.
      */
-    captureFrame: (filename: string) => void;
+    captureRemoteFrameToMemory: (trackSid: string, captureId: string, options?: FrameCaptureOptions) => void;
   }
 
   class TwilioVideoLocalView extends React.Component<TwilioVideoLocalViewProps> {}
@@ -17,7 +17,7 @@ import {
 import React, { Component } from "react";
 
 import PropTypes from "prop-types";
-import { toByteArray } from "base64-js";
+import { fromByteArray, toByteArray } from "base64-js";
 
 const propTypes = {
   ...View.propTypes,
@@ -166,6 +166,30 @@ const propTypes = {
    * @param {{ status, error }} 
    */
   onFlashlightStatusChanged: PropTypes.func,
+
+  /**
+   * Called when the local video track is created with a capture format
+   * @param {{ cameraId, width, height, fps, requestedWidth, requestedHeight, requestedFps }}
+   */
+  onLocalVideoFormatChanged: PropTypes.func,
+
+  /**
+   * Called with the result of getHardwareCodecSupport()
+   * @param {{ encoders, decoders, isH264Supported }}
+   */
+  onHardwareCodecSupport: PropTypes.func,
+
+  /**
+   * How often queued native events are delivered, in ms. 0 (the default) delivers
+   * them once per frame, a negative value delivers each event right away.
+   */
+  eventFlushIntervalMs: PropTypes.number,
+
+  /**
+   * The most threads frame captures are encoded on, 4 by default and never more than
+   * the number of cores. Shared by every TwilioVideo component.
+   */
+  maxCaptureThreads: PropTypes.number,
 };
 
 const nativeEvents = {
@@ -186,6 +210,13 @@ const nativeEvents = {
   prepareToRebuildLocalVideoTrack: 15,
   captureFrame: 16,
   setFlashlightStatus: 17,
+  captureFrameToMemory: 18,
+  releaseCapturedFrame: 19,
+  startFrameCaptureBurst: 20,
+  stopFrameCaptureBurst: 21,
+  captureRemoteFrame: 22,
+  getHardwareCodecSupport: 23,
+  sendBinary: 24,
 };
 
 class CustomTwilioVideoView extends Component {
@@ -200,6 +231,12 @@ class CustomTwilioVideoView extends Component {
     dominantSpeakerEnabled = false,
     maintainVideoTrackInBackground = false,
     encodingParameters = {},
+    adaptiveSubscription = null,
+    bandwidthProfile = null,
+    videoFormat = null,
+    adaptiveCapture = null,
+    dataTrackBatching = null,
+    dataTracks = null,
   }) {
     this.runCommand(nativeEvents.connectToRoom, [
       roomName,
@@ -212,11 +249,24 @@ class CustomTwilioVideoView extends Component {
       maintainVideoTrackInBackground,
       cameraType,
       encodingParameters,
+      adaptiveSubscription,
+      bandwidthProfile,
+      videoFormat,
+      adaptiveCapture,
+      dataTrackBatching,
+      dataTracks,
     ]);
   }
 
-  sendString(message) {
-    this.runCommand(nativeEvents.sendString, [message]);
+  sendString(message, trackName = null) {
+    this.runCommand(nativeEvents.sendString, [message, trackName]);
+  }
+
+  // the bridge only carries strings, the bytes are Base64 encoded on the way
+  sendBinary(message, trackName = null) {
+    const bytes =
+      message instanceof Uint8Array ? message : new Uint8Array(message);
+    this.runCommand(nativeEvents.sendBinary, [fromByteArray(bytes), trackName]);
   }
 
   publishLocalAudio() {
@@ -251,8 +301,8 @@ class CustomTwilioVideoView extends Component {
     this.runCommand(nativeEvents.prepareToRebuildLocalVideoTrack, [localVideoTrackName]);
   }
 
-  setLocalVideoEnabled(enabled, cameraType) {
-    this.runCommand(nativeEvents.toggleVideo, [enabled, cameraType]);
+  setLocalVideoEnabled(enabled, cameraType, videoFormat = null) {
+    this.runCommand(nativeEvents.toggleVideo, [enabled, cameraType, videoFormat]);
     return Promise.resolve(enabled);
   }
 
@@ -279,6 +329,10 @@ class CustomTwilioVideoView extends Component {
     this.runCommand(nativeEvents.getStats, []);
   }
 
+  getHardwareCodecSupport() {
+    this.runCommand(nativeEvents.getHardwareCodecSupport, []);
+  }
+
   disableOpenSLES() {
     this.runCommand(nativeEvents.disableOpenSLES, []);
   }
@@ -287,8 +341,32 @@ class CustomTwilioVideoView extends Component {
     this.runCommand(nativeEvents.toggleSoundSetup, [speaker]);
   }
 
-  captureFrame(filename) {
-    this.runCommand(nativeEvents.captureFrame, [filename]);
+  captureFrame(filename, options = null) {
+    this.runCommand(nativeEvents.captureFrame, [filename, options]);
+  }
+
+  captureFrameToMemory(captureId, options = null) {
+    this.runCommand(nativeEvents.captureFrameToMemory, [captureId, options]);
+  }
+
+  releaseCapturedFrame(captureId) {
+    this.runCommand(nativeEvents.releaseCapturedFrame, [captureId]);
+  }
+
+  startFrameCaptureBurst(burstId, options = {}) {
+    this.runCommand(nativeEvents.startFrameCaptureBurst, [burstId, options]);
+  }
+
+  stopFrameCaptureBurst() {
+    this.runCommand(nativeEvents.stopFrameCaptureBurst, []);
+  }
+
+  captureRemoteFrame(trackSid, filename, options = null) {
+    this.runCommand(nativeEvents.captureRemoteFrame, [trackSid, filename, false, options]);
+  }
+
+  captureRemoteFrameToMemory(trackSid, captureId, options = null) {
+    this.runCommand(nativeEvents.captureRemoteFrame, [trackSid, captureId, true, options]);
   }
 
   runCommand(event, args) {
@@ -332,6 +410,8 @@ class CustomTwilioVideoView extends Component {
       "onDominantSpeakerDidChange",
       "onLocalParticipantSupportedCodecs",
       "onFlashlightStatusChanged",
+      "onLocalVideoFormatChanged",
+      "onHardwareCodecSupport",
     ].reduce((wrappedEvents, eventName) => {
       let handler = (data) => this.props[eventName](data.nativeEvent);
 
@@ -352,12 +432,25 @@ class CustomTwilioVideoView extends Component {
     }, {});
   }
 
+  // events queued natively during one flush interval arrive together, dispatch them to their wrappers
+  buildEventBatchHandler(wrappedEvents) {
+    return (data) => {
+      data.nativeEvent.events.forEach(({ name, data: nativeEvent }) => {
+        if (wrappedEvents[name]) {
+          wrappedEvents[name]({ nativeEvent });
+        }
+      });
+    };
+  }
+
   render() {
+    const wrappedEvents = this.buildNativeEventWrappers();
     return (
       <NativeCustomTwilioVideoView
         ref="videoView"
         {...this.props}
-        {...this.buildNativeEventWrappers()}
+        {...wrappedEvents}
+        onEventBatch={this.buildEventBatchHandler(wrappedEvents)}
       />
     );
   }